@@ -0,0 +1,159 @@
+package io.github.spigotcvn.merger.benchmark;
+
+import io.github.spigotcvn.merger.MappingMerger;
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.Saveable;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for loading, changing and saving mappings, run with {@code gradlew jmh}.
+ * The allocation rate of every benchmark is reported by the gc profiler, which is enabled in the build file.
+ * The mappings are made by a {@link MappingGenerator} with a fixed seed, so every run works on the same mappings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"2", "4"})
+    public int namespaces;
+
+    private List<String> namespaceNames;
+    private byte[] tinyBytes;
+    private byte[] csrgBytes;
+    private TinyMappingFile tiny;
+    private CSRGMappingFile csrg;
+    private CSRGMappingFile packages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MappingGenerator generator = new MappingGenerator(0);
+        generator.setEntries(entries);
+        generator.setNamespaces(namespaces);
+        namespaceNames = generator.getNamespaceNames();
+        tinyBytes = toBytes(generator.tiny());
+        csrgBytes = toBytes(generator.csrg());
+
+        tiny = new TinyMappingFile();
+        tiny.loadFromStream(new ByteArrayInputStream(tinyBytes));
+        csrg = new CSRGMappingFile();
+        csrg.loadFromStream(new ByteArrayInputStream(csrgBytes));
+        packages = new CSRGMappingFile();
+        packages.loadFromStream(new ByteArrayInputStream(toBytes(generator.packages())));
+    }
+
+    private static byte[] toBytes(Saveable mappings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mappings.saveToStream(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A fresh copy of the tiny mappings for every iteration, for benchmarks that change them.
+     * Those benchmarks run a single call per iteration, so every call gets a fresh copy
+     * without the per invocation setup JMH warns about. Copying happens outside of the measured time.
+     */
+    @State(Scope.Thread)
+    public static class TinyCopy {
+        private TinyMappingFile tiny;
+
+        @Setup(Level.Iteration)
+        public void copy(MappingBenchmark benchmark) {
+            tiny = benchmark.tiny.copy();
+        }
+    }
+
+    @Benchmark
+    public TinyMappingFile loadTiny() throws Exception {
+        TinyMappingFile loaded = new TinyMappingFile();
+        loaded.loadFromStream(new ByteArrayInputStream(tinyBytes));
+        return loaded;
+    }
+
+    @Benchmark
+    public CSRGMappingFile loadCSRG() throws Exception {
+        CSRGMappingFile loaded = new CSRGMappingFile();
+        loaded.loadFromStream(new ByteArrayInputStream(csrgBytes));
+        return loaded;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public TinyMappingFile mergeTinyWithCSRG(TinyCopy copy) {
+        MappingMerger.mergeTinyWithCSRG(copy.tiny, csrg, "merged");
+        return copy.tiny;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public TinyMappingFile replaceOriginalNamespace(TinyCopy copy) {
+        MappingMerger.replaceOriginalNamespace(copy.tiny, namespaceNames.get(1));
+        return copy.tiny;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public CSRGMappingFile createCSRGfromTiny(TinyCopy copy) {
+        // the copy has no cached translation tables, so they are built as part of the benchmark
+        return MappingMerger.createCSRGfromTiny(copy.tiny, namespaceNames.get(0), namespaceNames.get(1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public TinyMappingFile applyPackageMapping(TinyCopy copy) {
+        MappingMerger.applyPackageMapping(copy.tiny, packages, false);
+        return copy.tiny;
+    }
+
+    @Benchmark
+    public long saveTiny() {
+        CountingOutputStream out = new CountingOutputStream();
+        tiny.saveToStream(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long saveCSRG() {
+        CountingOutputStream out = new CountingOutputStream();
+        csrg.saveToStream(out);
+        return out.count;
+    }
+
+    /**
+     * Throws away everything written to it, so saving isn't measured together with copying the output.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
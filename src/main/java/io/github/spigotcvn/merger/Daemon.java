@@ -0,0 +1,117 @@
+package io.github.spigotcvn.merger;
+
+import joptsimple.OptionParser;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A long running process that runs jobs sent to it, keeping the mapping files it loads in a {@link MappingCache}.
+ * Repeated jobs on the same files don't have to parse them again and run on already compiled code.
+ * <p>
+ * Every job is one line with the same arguments the program takes on the command line, separated by whitespace,
+ * for example {@code --mode REPLACE_ORIGINAL --from mappings.tiny --namespace named --out out.tiny}.
+ * Relative paths are resolved against the working directory of the daemon.
+ * Everything the job prints is sent back, followed by a line that is either {@code DONE} or {@code FAILED <message>}.
+ * The line {@code STATUS} answers with the state of the cache, {@code STOP} stops the daemon.
+ * <p>
+ * Jobs run one at a time, as the output of a job is captured by replacing {@link System#out}.
+ */
+public class Daemon {
+    private final MappingCache cache;
+    private final OptionParser parser = Main.createParser();
+    private final Object jobLock = new Object();
+    private volatile boolean stopped;
+
+    public Daemon(MappingCache cache) {
+        if(cache == null) {
+            throw new IllegalArgumentException("Cache cannot be null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Runs jobs read from a stream until it ends or the daemon is stopped.
+     * @param in The stream to read the jobs from
+     * @param out The stream to write the output of the jobs to
+     */
+    public void serve(InputStream in, PrintStream out) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while(!stopped && (line = reader.readLine()) != null) {
+                handle(line.trim(), out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Accepts connections on the loopback address and runs the jobs sent over them until the daemon is stopped.
+     * Every connection can send any amount of jobs.
+     * @param port The port to listen on
+     */
+    // the connection that stops the daemon closes the server early, which ends the wait for the next connection
+    @SuppressWarnings("try")
+    public void listen(int port) {
+        try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Waiting for jobs on " + server.getLocalSocketAddress() + ".");
+            while(!stopped) {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> {
+                    try(Socket client = socket) {
+                        serve(client.getInputStream(), new PrintStream(client.getOutputStream(), true, "UTF-8"));
+                    } catch (IOException e) {
+                        System.err.println("Connection failed: " + e);
+                    }
+                    if(stopped) {
+                        try {
+                            server.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }, "mapping-merger-connection");
+                connection.setDaemon(true);
+                connection.start();
+            }
+        } catch (IOException e) {
+            if(!stopped) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void handle(String line, PrintStream out) {
+        if(line.isEmpty()) {
+            return;
+        }
+        if(line.equals("STOP")) {
+            stopped = true;
+            out.println("DONE");
+            return;
+        }
+        if(line.equals("STATUS")) {
+            out.println(cache);
+            out.println("DONE");
+            return;
+        }
+
+        synchronized(jobLock) {
+            PrintStream systemOut = System.out;
+            System.setOut(out);
+            try {
+                Main.run(parser.parse(line.split("\\s+")), cache);
+                out.println("DONE");
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                out.println("FAILED " + e.getMessage());
+            } finally {
+                System.setOut(systemOut);
+            }
+        }
+    }
+}
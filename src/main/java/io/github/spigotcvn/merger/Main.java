@@ -1,138 +1,433 @@
 package io.github.spigotcvn.merger;
 
+import io.github.spigotcvn.merger.diff.DiffWriter;
+import io.github.spigotcvn.merger.diff.MappingDiff;
 import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
-import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
-import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.files.*;
 import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.MetricsReport;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.metrics.PhaseResult;
+import io.github.spigotcvn.merger.util.CompressedFiles;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+import io.github.spigotcvn.merger.validation.MissingNamePolicy;
+import io.github.spigotcvn.merger.validation.ValidationReport;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
 
 public class Main {
     public static void main(String[] args) throws InvalidMappingFormatException {
+        OptionSet options = createParser().parse(args);
+        if(options.valueOf("mode") == RunMode.DAEMON) {
+            Integer port = (Integer) options.valueOf("port");
+            long cacheSize = (Long) options.valueOf("cache-size");
+            Daemon daemon = new Daemon(new MappingCache(cacheSize * 1024 * 1024));
+            if(port != null) {
+                daemon.listen(port);
+            } else {
+                daemon.serve(System.in, System.out);
+            }
+            return;
+        }
+
+        // shared between all loaded files, so names they have in common are only stored once
+        run(options, MappingLoader.create(SymbolTable.create()));
+    }
+
+    static OptionParser createParser() {
         OptionParser parser = new OptionParser();
         parser.accepts("mode").withRequiredArg().ofType(RunMode.class).required()
-                .describedAs("The mode to run the program in. Either MERGE_TINY, REPLACE_ORIGINAL, CREATE_CSRG_FROM_TINY");
-        parser.accepts("from").withRequiredArg().ofType(File.class).required()
-                .describedAs("The csrg mapping that contains the mappings you want to merge into the to mapping.");
+                .describedAs("The mode to run the program in. Either MERGE_TINY, REMERGE, REPLACE_ORIGINAL, CREATE_CSRG_FROM_TINY, PACKAGE_MAPPINGS, SNAPSHOT, PIPELINE, DIFF, VALIDATE, DAEMON");
+        parser.accepts("from").withRequiredArg().ofType(File.class)
+                .describedAs("The csrg mapping that contains the mappings you want to merge into the to mapping. "
+                        + "Can be given multiple times if MERGE is selected, together with one namespace for every csrg mapping. The older mapping if DIFF is selected.");
         parser.accepts("to").withRequiredArg().ofType(File.class)
-                .describedAs("The tiny mapping that you want to merge the from mapping into.");
-        parser.accepts("out").withRequiredArg().ofType(File.class).required()
-                .describedAs("The file to save the merged mappings to.");
+                .describedAs("The tiny mapping that you want to merge the from mapping into. The newer mapping if DIFF is selected.");
+        parser.accepts("out").withRequiredArg().ofType(File.class)
+                .describedAs("The file to save the merged mappings to. Optional if PIPELINE is selected, the steps save their own files then.");
+        parser.accepts("previous").withRequiredArg().ofType(File.class)
+                .describedAs("Only available if REMERGE is selected. The csrg mapping the to mapping was merged with before.");
         parser.accepts("namespace").withRequiredArg().ofType(String.class)
-                .describedAs("The namespace to use for the merged mappings.");
+                .describedAs("The namespace to use for the merged mappings. Can be given multiple times if MERGE is selected.");
         parser.accepts("remap-namespace").withRequiredArg().ofType(String.class)
                 .describedAs("Only available if CREATE_CSRG_FROM_TINY is selected. The namespace that will be used as the remapped one in the CSRG mappings.");
+        parser.accepts("step").withRequiredArg().ofType(String.class)
+                .describedAs("Only available if PIPELINE is selected. A step of the pipeline, can be given multiple times. See the Pipeline class for the available steps.");
+        parser.accepts("pipeline").withRequiredArg().ofType(File.class)
+                .describedAs("Only available if PIPELINE is selected. A file with one pipeline step per line, run before the steps given with --step.");
+        parser.accepts("report").withRequiredArg().ofType(File.class)
+                .describedAs("A file to write the wall time, entries, throughput, allocations and counters of every phase to, as JSON.");
+        parser.accepts("diff-format").withRequiredArg().ofType(DiffWriter.Format.class).defaultsTo(DiffWriter.Format.TEXT)
+                .describedAs("Only available if DIFF is selected. The format of the changes, either TEXT or JSON.");
+        parser.accepts("missing-names").withRequiredArg().ofType(MissingNamePolicy.class).defaultsTo(MissingNamePolicy.FILL)
+                .describedAs("What saving tiny mappings does with mappings that have no name in a namespace. "
+                        + "Either FAIL, FILL to save the original name instead or SKIP to not save the mapping.");
+        parser.accepts("threads").withRequiredArg().ofType(Integer.class)
+                .describedAs("The amount of threads the parallel stages run on, 1 runs everything sequentially. Uses the common pool if not given.");
+        parser.accepts("port").withRequiredArg().ofType(Integer.class)
+                .describedAs("Only available if DAEMON is selected. The local port to accept jobs on, jobs are read from the standard input if not given.");
+        parser.accepts("cache-size").withRequiredArg().ofType(Long.class).defaultsTo(1024L)
+                .describedAs("Only available if DAEMON is selected. The maximum size in megabytes the mapping files kept in memory may take, estimated from their amount of names.");
+        parser.accepts("result-cache").withRequiredArg().ofType(File.class)
+                .describedAs("A directory to store the output of jobs in. Jobs with the same mode, arguments and input file contents as a stored one only copy its output.");
+        parser.accepts("result-cache-size").withRequiredArg().ofType(Long.class).defaultsTo(1024L)
+                .describedAs("Only available if result-cache is given. The maximum size in megabytes of the stored outputs.");
+        parser.accepts("result-cache-link",
+                "Only available if result-cache is given. Hard links stored outputs instead of copying them, the out file must not be changed in place then.");
         parser.allowsUnrecognizedOptions();
+        return parser;
+    }
+
+    /**
+     * Runs a single job.
+     * @param options The parsed arguments of the job
+     * @param loader Loads all mapping files the job reads
+     */
+    static void run(OptionSet options, MappingLoader loader) {
+        RunMode mode = (RunMode) options.valueOf("mode");
+        File report = (File) options.valueOf("report");
+        Integer threads = (Integer) options.valueOf("threads");
+        File resultCacheDirectory = (File) options.valueOf("result-cache");
+
+        List<PhaseResult> results;
+        Metrics.startRecording();
+        try(ExecutionContext context = threads == null ? ExecutionContext.common() : ExecutionContext.withThreads(threads)) {
+            // everything runs in the context, so the total phase measures the threads of the context
+            context.run(() -> runRecorded(options, loader, mode, resultCacheDirectory));
+        } finally {
+            results = Metrics.stopRecording();
+        }
+        MetricsReport.print(results, System.out);
+        if(report != null) {
+            MetricsReport.writeJson(results, report);
+        }
+    }
+
+    // the total phase is only there to be measured
+    @SuppressWarnings("try")
+    private static void runRecorded(OptionSet options, MappingLoader loader, RunMode mode, File resultCacheDirectory) {
+        try(Phase phase = Metrics.start("total", String.valueOf(mode))) {
+            ResultCache resultCache = null;
+            String key = null;
+            if(resultCacheDirectory != null) {
+                resultCache = new ResultCache(resultCacheDirectory, (Long) options.valueOf("result-cache-size") * 1024 * 1024,
+                        options.has("result-cache-link"));
+                key = resultCacheKey(options);
+            }
+            File out = (File) options.valueOf("out");
+            if(key != null && restoreResult(resultCache, key, out)) {
+                System.out.println("Restored " + out.getName() + " from the result cache.");
+            } else {
+                if(key != null) {
+                    // the out file may be a link to a stored result, which must not be overwritten in place
+                    deleteOutput(out);
+                }
+                runJob(options, loader);
+                if(key != null) {
+                    storeResult(resultCache, key, out);
+                }
+            }
+        }
+    }
+
+    // the result cache phases are only there to be measured
+    @SuppressWarnings("try")
+    private static boolean restoreResult(ResultCache resultCache, String key, File out) {
+        try(Phase phase = Metrics.start("result-cache.restore", out.getName())) {
+            return resultCache.restore(key, out);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private static void storeResult(ResultCache resultCache, String key, File out) {
+        try(Phase phase = Metrics.start("result-cache.store", out.getName())) {
+            resultCache.store(key, out);
+        }
+    }
 
-        OptionSet options = parser.parse(args);
+    private static void deleteOutput(File out) {
+        try {
+            Files.deleteIfExists(out.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The key of the job in the result cache, or null if the job can't be cached
+     */
+    @SuppressWarnings("try")
+    private static String resultCacheKey(OptionSet options) {
         RunMode mode = (RunMode) options.valueOf("mode");
+        // MERGE mode takes multiple from files
+        File from = mode == RunMode.MERGE ? null : (File) options.valueOf("from");
+        File to = (File) options.valueOf("to");
+        File previous = (File) options.valueOf("previous");
+        File out = (File) options.valueOf("out");
+
+        List<File> inputs;
+        if(mode == RunMode.MERGE) {
+            inputs = new ArrayList<>();
+            for(Object file : options.valuesOf("from")) {
+                inputs.add((File) file);
+            }
+            inputs.add(to);
+        } else if(mode == RunMode.PACKAGE_MAPPINGS) {
+            inputs = Arrays.asList(from, to);
+        } else if(mode == RunMode.REMERGE) {
+            inputs = Arrays.asList(from, to, previous);
+        } else if(mode == RunMode.DIFF) {
+            inputs = Arrays.asList(from, to);
+        } else if(mode == RunMode.REPLACE_ORIGINAL || mode == RunMode.CREATE_CSRG_FROM_TINY || mode == RunMode.SNAPSHOT) {
+            inputs = Collections.singletonList(from);
+        } else {
+            // pipelines write more files than the out file, validation only prints its report
+            return null;
+        }
+        if(out == null || inputs.contains(null)) {
+            return null;
+        }
+
+        List<String> arguments = Arrays.asList(
+                mode.name(),
+                options.valuesOf("namespace").toString(),
+                (String) options.valueOf("remap-namespace"),
+                // PACKAGE_MAPPINGS mode never repackages the original namespace
+                String.valueOf(false),
+                String.valueOf(options.valueOf("diff-format")),
+                String.valueOf(options.valueOf("missing-names")),
+                String.valueOf(CompressedFiles.shouldCompress(out))
+        );
+        try(Phase phase = Metrics.start("result-cache.hash")) {
+            return ResultCache.key(arguments, inputs);
+        }
+    }
+
+    private static void runJob(OptionSet options, MappingLoader loader) {
+        RunMode mode = (RunMode) options.valueOf("mode");
+        if(mode == RunMode.MERGE) {
+            runMerge(options, loader);
+            return;
+        }
+        if(mode == RunMode.VALIDATE) {
+            runValidate(options, loader);
+            return;
+        }
         File from = (File) options.valueOf("from");
         File to = (File) options.valueOf("to");
         File out = (File) options.valueOf("out");
         String namespace = (String) options.valueOf("namespace");
         String otherNamespace = (String) options.valueOf("remap-namespace");
+        File pipelineFile = (File) options.valueOf("pipeline");
+        File previous = (File) options.valueOf("previous");
 
-        if(mode == RunMode.MERGE) {
-            if(to == null) {
-                throw new IllegalArgumentException("The to argument is required when running in MERGE mode.");
-            }
+        if(mode == RunMode.DAEMON) {
+            throw new IllegalArgumentException("DAEMON mode can't be run as a job.");
+        }
+        if(from == null) {
+            throw new IllegalArgumentException("The from argument is required when running in " + mode + " mode.");
+        }
+        // pipelines only write the files their steps save, unless an out file is given
+        if(out == null && mode != RunMode.PIPELINE) {
+            throw new IllegalArgumentException("The out argument is required when running in " + mode + " mode.");
+        }
 
-            CSRGMappingFile fromFile = new CSRGMappingFile();
-            fromFile.loadFromFile(from);
-            TinyMappingFile toFile = new TinyMappingFile();
-            toFile.loadFromFile(to);
+        if(mode == RunMode.REMERGE) {
+            if(to == null || previous == null) {
+                throw new IllegalArgumentException("The to and previous arguments are required when running in REMERGE mode.");
+            }
 
-            System.out.println("Merging mappings " + from.getName() + " into " + to.getName() + ".");
-            System.out.println("The process may take a while, please wait...");
+            CSRGMappingFile previousFile = loader.loadCSRG(previous);
+            CSRGMappingFile fromFile = loader.loadCSRG(from);
+            TinyMappingFile toFile = loadTiny(loader, to, options);
 
-            long start = System.currentTimeMillis();
-            long startMerge = System.currentTimeMillis();
-            MappingMerger.mergeTinyWithCSRG(toFile, fromFile, namespace);
-            long endMerge = System.currentTimeMillis();
-            System.out.println("Merging mappings took " + (endMerge - startMerge) + "ms.");
-            System.out.println("Saving mappings to " + out.getName() + ".");
-            System.out.println("The process may take a while, please wait...");
+            System.out.println("Updating namespace " + namespace + " of " + to.getName() + " from " + previous.getName() + " to " + from.getName() + ".");
+            int changed = MappingMerger.remergeTinyWithCSRG(toFile, previousFile, fromFile, namespace);
+            System.out.println(changed + " mappings changed, saving them to " + out.getName() + ".");
 
-            long startSave = System.currentTimeMillis();
             toFile.saveToFile(out);
-            long endSave = System.currentTimeMillis();
-            System.out.println("Saving mappings took " + (endSave - startSave) + "ms.");
-            long end = System.currentTimeMillis();
-            System.out.println("The whole process took " + (end - start) + "ms.");
         } else if(mode == RunMode.REPLACE_ORIGINAL) {
-            TinyMappingFile fromFile = new TinyMappingFile();
-            fromFile.loadFromFile(from);
+            TinyMappingFile fromFile = loadTiny(loader, from, options);
 
             System.out.println(fromFile.getMapping("intermediary", new Mapping(Mapping.Type.CLASS, "l")));
 
             System.out.println("Replacing namespace " + namespace + " in " + from.getName() + ".");
             System.out.println("The process may take a while, please wait...");
 
-            long start = System.currentTimeMillis();
-            long startReplace = System.currentTimeMillis();
             MappingMerger.replaceOriginalNamespace(fromFile, namespace);
-            long endReplace = System.currentTimeMillis();
-            System.out.println("Replacing namespace took " + (endReplace - startReplace) + "ms.");
             System.out.println("Saving mappings to " + out.getName() + ".");
             System.out.println("The process may take a while, please wait...");
 
-            long startSave = System.currentTimeMillis();
             fromFile.saveToFile(out);
-            long endSave = System.currentTimeMillis();
-            System.out.println("Saving mappings took " + (endSave - startSave) + "ms.");
-            long end = System.currentTimeMillis();
-            System.out.println("The whole process took " + (end - start) + "ms.");
         } else if(mode == RunMode.CREATE_CSRG_FROM_TINY) {
             if(otherNamespace == null) {
                 throw new IllegalArgumentException("The remap-namespace argument is required when running in CREATE_CSRG_FROM_TINY mode.");
             }
 
-            TinyMappingFile fromFile = new TinyMappingFile();
-            fromFile.loadFromFile(from);
+            TinyMappingFile fromFile = loader.loadTiny(from);
 
             CSRGMappingFile outMapping;
 
             System.out.println("Creating CSRG mappings from " + from.getName() + ".");
             System.out.println("The process may take a while, please wait...");
 
-            long start = System.currentTimeMillis();
-            long startCreate = System.currentTimeMillis();
             outMapping = MappingMerger.createCSRGfromTiny(fromFile, namespace, otherNamespace);
-            long endCreate = System.currentTimeMillis();
-            System.out.println("Creating CSRG mappings took " + (endCreate - startCreate) + "ms.");
             System.out.println("Saving mappings to " + out.getName() + ".");
             System.out.println("The process may take a while, please wait...");
 
-            long startSave = System.currentTimeMillis();
             outMapping.saveToFile(out);
-            long endSave = System.currentTimeMillis();
-            System.out.println("Saving mappings took " + (endSave - startSave) + "ms.");
-            long end = System.currentTimeMillis();
-            System.out.println("The whole process took " + (end - start) + "ms.");
         } else if(mode == RunMode.PACKAGE_MAPPINGS) {
             if(to == null) {
                 throw new IllegalArgumentException("The to argument is required when running in PACKAGE_MAPPINGS mode.");
             }
 
-            CSRGMappingFile fromFile = new CSRGMappingFile();
-            fromFile.loadFromFile(from);
-            TinyMappingFile toFile = new TinyMappingFile();
-            toFile.loadFromFile(to);
+            CSRGMappingFile fromFile = loader.loadCSRG(from);
+            TinyMappingFile toFile = loadTiny(loader, to, options);
 
             System.out.println("Applying package mappings to " + to.getName());
-            long start = System.currentTimeMillis();
-            long startApply = System.currentTimeMillis();
             MappingMerger.applyPackageMapping(toFile, fromFile, false);
-            long endApply = System.currentTimeMillis();
-            System.out.println("Applying package mappings took " + (endApply - startApply) + "ms.");
-            long startSave = System.currentTimeMillis();
             toFile.saveToFile(out);
-            long endSave = System.currentTimeMillis();
-            System.out.println("Saving mappings took " + (endSave - startSave) + "ms.");
-            long end = System.currentTimeMillis();
-            System.out.println("The whole process took " + (end - start) + "ms.");
+        } else if(mode == RunMode.PIPELINE) {
+            List<String> steps = new ArrayList<>();
+            if(pipelineFile != null) {
+                try {
+                    steps.addAll(Files.readAllLines(pipelineFile.toPath()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            options.valuesOf("step").forEach(step -> steps.add((String) step));
+            Pipeline pipeline = Pipeline.parse(steps);
+
+            TinyMappingFile fromFile = loadTiny(loader, from, options);
+
+            System.out.println("Running pipeline on " + from.getName() + ".");
+            System.out.println("The process may take a while, please wait...");
+            // the tiny mappings left at the end of the pipeline are saved to the out file, if there is one
+            pipeline.run(fromFile, out, loader);
+        } else if(mode == RunMode.DIFF) {
+            if(to == null) {
+                throw new IllegalArgumentException("The to argument is required when running in DIFF mode.");
+            }
+
+            System.out.println("Comparing " + from.getName() + " with " + to.getName() + " and saving the changes to " + out.getName() + ".");
+            // only the smaller file is loaded completely, the bigger one is read in batches
+            boolean tiny = isTinyFile(from);
+            if(tiny != isTinyFile(to)) {
+                throw new IllegalArgumentException("Can't compare a tiny file with a csrg file.");
+            }
+            try(DiffWriter writer = new DiffWriter(CompressedFiles.openOutput(out), (DiffWriter.Format) options.valueOf("diff-format"))) {
+                if(tiny) {
+                    MappingDiff.diffTiny(from, to, writer);
+                } else {
+                    MappingDiff.diffCSRG(from, to, writer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if(mode == RunMode.SNAPSHOT) {
+            System.out.println("Creating a snapshot of " + from.getName() + " and saving it to " + out.getName() + ".");
+            Saveable snapshot;
+            int entries;
+            if(isTinyFile(from)) {
+                TinyMappingFile fromFile = loader.loadTiny(from);
+                snapshot = new TinyMappingSnapshot(fromFile);
+                entries = fromFile.size();
+            } else {
+                CSRGMappingFile fromFile = loader.loadCSRG(from);
+                snapshot = new CSRGMappingSnapshot(fromFile);
+                entries = fromFile.size();
+            }
+            try(Phase phase = Metrics.start("snapshot.save", out.getName())) {
+                snapshot.saveToFile(out);
+                phase.setEntries(entries);
+            }
+        }
+    }
+
+    private static void runMerge(OptionSet options, MappingLoader loader) {
+        List<?> from = options.valuesOf("from");
+        List<?> namespaces = options.valuesOf("namespace");
+        File to = (File) options.valueOf("to");
+        File out = (File) options.valueOf("out");
+
+        if(from.isEmpty() || to == null || out == null) {
+            throw new IllegalArgumentException("The from, to and out arguments are required when running in MERGE mode.");
+        }
+        if(from.size() != namespaces.size()) {
+            throw new IllegalArgumentException("Every from argument needs a namespace argument when running in MERGE mode.");
+        }
+
+        // every csrg file is merged into the namespace given at the same position
+        Map<String, CSRGMappingFile> csrgs = new LinkedHashMap<>();
+        for(int i = 0; i < from.size(); i++) {
+            String namespace = (String) namespaces.get(i);
+            if(csrgs.put(namespace, loader.loadCSRG((File) from.get(i))) != null) {
+                throw new IllegalArgumentException("Namespace " + namespace + " is given multiple times.");
+            }
+        }
+
+        System.out.println("Merging mappings " + from.stream().map(file -> ((File) file).getName()).collect(Collectors.joining(", "))
+                + " into " + to.getName() + " and saving them to " + out.getName() + ".");
+        System.out.println("The process may take a while, please wait...");
+
+        MissingNamePolicy missingNames = (MissingNamePolicy) options.valueOf("missing-names");
+        if(SnapshotFormat.isSnapshot(to) || missingNames == MissingNamePolicy.FAIL) {
+            // snapshots can't be merged while reading them line by line,
+            // and failing on missing names has to report all of them before anything is written
+            TinyMappingFile toFile = loadTiny(loader, to, options);
+            MappingMerger.mergeTinyWithCSRG(toFile, csrgs);
+            toFile.saveToFile(out);
+            return;
+        }
+
+        // the tiny file is merged while it is read, it never has to be loaded completely
+        try(InputStream is = CompressedFiles.openInput(to); OutputStream os = CompressedFiles.openOutput(out)) {
+            MappingMerger.mergeTinyWithCSRG(is, csrgs, missingNames, os);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void runValidate(OptionSet options, MappingLoader loader) {
+        File from = (File) options.valueOf("from");
+        if(from == null) {
+            throw new IllegalArgumentException("The from argument is required when running in VALIDATE mode.");
+        }
+
+        System.out.println("Validating " + from.getName() + ".");
+        ValidationReport report = loader.loadTiny(from).validate();
+        System.out.println(report);
+        if(!report.isEmpty()) {
+            throw new IllegalStateException("The mappings in " + from.getName() + " have problems.");
+        }
+    }
+
+    /**
+     * Loads a tiny file that is saved with the missing name policy of the job.
+     */
+    private static TinyMappingFile loadTiny(MappingLoader loader, File file, OptionSet options) {
+        TinyMappingFile tiny = loader.loadTiny(file);
+        tiny.setMissingNamePolicy((MissingNamePolicy) options.valueOf("missing-names"));
+        return tiny;
+    }
+
+    private static boolean isTinyFile(File file) {
+        if(SnapshotFormat.isSnapshot(file)) {
+            return SnapshotFormat.isTinySnapshot(file);
+        }
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(CompressedFiles.openInput(file)))) {
+            String line = reader.readLine();
+            return line != null && line.startsWith("v1");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
@@ -0,0 +1,187 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A loader that keeps parsed mapping files in memory, so loading the same file again only copies it.
+ * <p>
+ * Files are cached by their path, last modification time and size, a file that changed on disk is read again
+ * and replaces the cached version of it.
+ * The cost of keeping a file is an estimate of its size in memory from its amount of names, once the total is over
+ * the limit the least recently used files are evicted. Every load returns a copy, changing it doesn't change the cached mappings.
+ * Every file gets its own symbol table, so evicted files don't keep their names in memory. Copies get an empty symbol
+ * table of their own, so the names a job adds are released with its copy instead of being kept by the cached file.
+ * <p>
+ * Safe to use from multiple threads.
+ */
+public class MappingCache implements MappingLoader {
+    // the memory a stored name takes, including its share of the mappings, strings and indexes, measured on generated files
+    private static final long BYTES_PER_NAME = 128;
+
+    private final long maxSize;
+    // in access order, the first entry is the least recently used one
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxSize The maximum total size in bytes the files kept in memory may take, estimated from their amount of names
+     */
+    public MappingCache(long maxSize) {
+        if(maxSize < 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public TinyMappingFile loadTiny(File file) {
+        return load(file, TinyMappingFile.class, path -> {
+            TinyMappingFile tiny = new TinyMappingFile();
+            tiny.loadFromFile(path);
+            return tiny;
+        }, tiny -> (long) tiny.size() * (tiny.getNamespaceNames().size() + 1), cached -> {
+            TinyMappingFile copy = cached.copy();
+            copy.setSymbolTable(SymbolTable.create());
+            return copy;
+        });
+    }
+
+    @Override
+    public CSRGMappingFile loadCSRG(File file) {
+        return load(file, CSRGMappingFile.class, path -> {
+            CSRGMappingFile csrg = new CSRGMappingFile();
+            csrg.loadFromFile(path);
+            return csrg;
+        }, csrg -> csrg.size() * 2L, cached -> {
+            CSRGMappingFile copy = cached.copy();
+            copy.setSymbolTable(SymbolTable.create());
+            return copy;
+        });
+    }
+
+    /**
+     * Removes all files from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Cached files: " + entries.size() + " (" + size / 1024 / 1024 + "MB), hits: " + hits + ", misses: " + misses;
+    }
+
+    /**
+     * @param names Counts the names stored in the mappings, the cost of keeping them is estimated from it
+     */
+    private <T> T load(File file, Class<T> type, Function<File, T> loader, ToLongFunction<T> names, UnaryOperator<T> copier) {
+        Key key = Key.of(file, type);
+        T cached;
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            cached = entry == null ? null : type.cast(entry.mappings);
+            if(cached != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if(cached != null) {
+            return copier.apply(cached);
+        }
+
+        // loaded without holding the lock, so other files can be taken from the cache in the meantime
+        T loaded = loader.apply(file);
+        put(key, new Entry(loaded, names.applyAsLong(loaded) * BYTES_PER_NAME));
+        return copier.apply(loaded);
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        // older versions of the file are never used again
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<Key, Entry> other = iterator.next();
+            if(other.getKey().isOtherVersionOf(key)) {
+                size -= other.getValue().cost;
+                iterator.remove();
+            }
+        }
+        if(entry.cost > maxSize) {
+            return;
+        }
+        Entry replaced = entries.put(key, entry);
+        size += entry.cost - (replaced == null ? 0 : replaced.cost);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while(size > maxSize) {
+            size -= eldest.next().cost;
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final Object mappings;
+        // estimated size in memory
+        private final long cost;
+
+        private Entry(Object mappings, long cost) {
+            this.mappings = mappings;
+            this.cost = cost;
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final Class<?> type;
+
+        private Key(String path, long lastModified, long length, Class<?> type) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.type = type;
+        }
+
+        private static Key of(File file, Class<?> type) {
+            try {
+                return new Key(file.getCanonicalPath(), file.lastModified(), file.length(), type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean isOtherVersionOf(Key key) {
+            return path.equals(key.path) && type == key.type && (lastModified != key.lastModified || length != key.length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+
+            Key key = (Key) obj;
+            return lastModified == key.lastModified && length == key.length && path.equals(key.path) && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, length, type);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+
+import java.io.File;
+
+/**
+ * Loads the mapping files a run works on. Every call returns mappings the caller is allowed to change.
+ */
+public interface MappingLoader {
+    TinyMappingFile loadTiny(File file);
+
+    CSRGMappingFile loadCSRG(File file);
+
+    /**
+     * @param symbolTable The symbol table shared between all loaded files
+     * @return A loader that reads every file from disk again
+     */
+    static MappingLoader create(SymbolTable symbolTable) {
+        return new MappingLoader() {
+            @Override
+            public TinyMappingFile loadTiny(File file) {
+                TinyMappingFile tiny = new TinyMappingFile();
+                tiny.setSymbolTable(symbolTable);
+                tiny.loadFromFile(file);
+                return tiny;
+            }
+
+            @Override
+            public CSRGMappingFile loadCSRG(File file) {
+                CSRGMappingFile csrg = new CSRGMappingFile();
+                csrg.setSymbolTable(symbolTable);
+                csrg.loadFromFile(file);
+                return csrg;
+            }
+        };
+    }
+}
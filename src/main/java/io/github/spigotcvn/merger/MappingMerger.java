@@ -1,16 +1,30 @@
 package io.github.spigotcvn.merger;
 
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
 import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.NamespaceTranslation;
 import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
 import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Counter;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.remap.DescriptorRemapper;
+import io.github.spigotcvn.merger.remap.PackageRemapper;
+import io.github.spigotcvn.merger.util.ExecutionContext;
 import io.github.spigotcvn.merger.util.Pair;
+import io.github.spigotcvn.merger.validation.MissingNamePolicy;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.*;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class MappingMerger {
+    private static final Counter CSRG_HITS = Metrics.counter("csrg.lookup.hits");
+    // lookups that found nothing and fell back to the original name
+    private static final Counter CSRG_MISSES = Metrics.counter("csrg.lookup.misses");
+
     /**
      * Merges the tiny mappings with the CSRG mappings.
      * <p>
@@ -31,175 +45,364 @@ public class MappingMerger {
      * @param newNamespaceName The name of the new namespace that will be added to the tiny mappings
      */
     public static void mergeTinyWithCSRG(TinyMappingFile tiny, CSRGMappingFile csrg, String newNamespaceName) {
-        List<Pair<Mapping, Mapping>> remapped = tiny.getOriginalMappings().parallelStream().map(originalMapping -> {
-            Mapping remappedMapping = csrg.getRemapped(originalMapping);
+        mergeTinyWithCSRG(tiny, Collections.singletonMap(newNamespaceName, csrg));
+    }
 
-            if (remappedMapping == null && originalMapping.getType() == Mapping.Type.FIELD) {
-                // Fields in csrg do not have a descriptor, only name and class name
-                remappedMapping = csrg.getRemapped(new Mapping(Mapping.Type.FIELD, originalMapping.getName(), originalMapping.getClassName()));
-            }
+    /**
+     * Merges the tiny mappings with multiple CSRG mappings at once, every one of them into a new namespace.
+     * All csrg mappings are looked up in a single pass over the original mappings, the result is the same as merging
+     * them one after another with {@link #mergeTinyWithCSRG(TinyMappingFile, CSRGMappingFile, String)}.
+     * @param tiny The tiny mappings
+     * @param csrgs The csrg mappings by the name of the namespace they are merged into, the namespaces are added in the order of the map
+     */
+    public static void mergeTinyWithCSRG(TinyMappingFile tiny, Map<String, CSRGMappingFile> csrgs) {
+        checkNewNamespaces(tiny.getNamespaceNames(), csrgs.keySet());
+
+        try(Phase phase = Metrics.start("merge", String.join(",", csrgs.keySet()))) {
+            SymbolTable symbolTable = tiny.getSymbolTable();
+            CSRGMappingFile[] files = csrgs.values().toArray(new CSRGMappingFile[0]);
+            String[][] names = new String[files.length][tiny.size()];
+            ExecutionContext.current().forEachIndex(tiny.size(), row -> {
+                Mapping originalMapping = tiny.getOriginalMapping(row);
+                for(int i = 0; i < files.length; i++) {
+                    names[i][row] = symbolTable.intern(remapWithCSRG(files[i], originalMapping).getName());
+                }
+            });
 
-            if (remappedMapping == null) {
-                remappedMapping = originalMapping;
+            int i = 0;
+            for(String namespace : csrgs.keySet()) {
+                tiny.addNamespace(namespace);
+                tiny.setNames(namespace, names[i++]);
             }
+            phase.setEntries(tiny.size());
+        }
+    }
 
-            return new Pair<>(originalMapping, remappedMapping);
-        }).collect(Collectors.toList());
-
-        tiny.addNamespace(newNamespaceName);
-        remapped.forEach(pair -> tiny.addMapping(newNamespaceName, pair.getKey(), pair.getValue()));
+    /**
+     * @throws IllegalArgumentException If a new namespace is null, already exists or is added twice
+     */
+    private static void checkNewNamespaces(Collection<String> namespaces, Collection<String> newNamespaces) {
+        if(newNamespaces.isEmpty()) {
+            throw new IllegalArgumentException("No namespaces to add");
+        }
+        Set<String> added = new HashSet<>();
+        for(String namespace : newNamespaces) {
+            if(namespace == null || namespaces.contains(namespace) || !added.add(namespace)) {
+                throw new IllegalArgumentException("Invalid namespace: " + namespace);
+            }
+        }
     }
 
     /**
-     * Replaces a namespace in the tiny mappings.
-     * This means that you can for example make the namespace called official take all fields from the namespace called named
-     * spigot into itself, deleting the namespace called spigot.
-     * @param tiny The tiny mappings
-     * @param namespaceToReplace The namespace that should be replaced
-     * @param namespaceReplacedBy The namespace that should replace the other namespace
+     * Updates a namespace that was merged from csrg mappings to newer csrg mappings.
+     * Only the original mappings affected by entries that differ between the previous and the new csrg mappings are
+     * looked up again, the result is the same as merging the new csrg mappings with
+     * {@link #mergeTinyWithCSRG(TinyMappingFile, CSRGMappingFile, String)}.
+     * <p>
+     * The csrg mappings are joined on their original mappings to find the entries that changed, after that a single
+     * pass over the original mappings finds the ones affected by them, without looking anything up in the csrg mappings.
+     * @param tiny The tiny mappings, already containing the namespace merged from the previous csrg mappings
+     * @param previousCsrg The csrg mappings the namespace was merged from
+     * @param csrg The new csrg mappings
+     * @param namespace The merged namespace
+     * @return The amount of original mappings whose name in the namespace changed
      */
-    public static void replaceNamespace(TinyMappingFile tiny, String namespaceToReplace, String namespaceReplacedBy) {
-        if(namespaceToReplace.equals(namespaceReplacedBy)) {
-            return;
+    public static int remergeTinyWithCSRG(TinyMappingFile tiny, CSRGMappingFile previousCsrg, CSRGMappingFile csrg, String namespace) {
+        if(namespace == null || namespace.equals(tiny.getOriginalNamespaceName()) || !tiny.getNamespaceNames().contains(namespace)) {
+            throw new IllegalArgumentException("Invalid namespace: " + namespace);
         }
 
-        Map<Mapping, Mapping> mappings;
+        try(Phase phase = Metrics.start("remerge", namespace)) {
+            Set<Mapping> changed = new HashSet<>();
+            // fields that aren't found are looked up again without their descriptor, so a changed field can rename all fields with its name and class
+            Set<Mapping> changedFields = new HashSet<>();
+            Set<String> changedFieldNames = new HashSet<>();
+            for(Mapping original : changedEntries(previousCsrg, csrg)) {
+                if(original.getType() == Mapping.Type.FIELD) {
+                    changedFields.add(new Mapping(Mapping.Type.FIELD, original.getName(), original.getClassName(), null));
+                    changedFieldNames.add(original.getName());
+                } else {
+                    changed.add(original);
+                }
+            }
 
-        List<Mapping> original = tiny.getOriginalMappings();
+            ExecutionContext context = ExecutionContext.current();
+            int[] rows = context.call(() -> context.stream(IntStream.range(0, tiny.size()))
+                    .filter(row -> {
+                        Mapping original = tiny.getOriginalMapping(row);
+                        if(original.getType() != Mapping.Type.FIELD) {
+                            return changed.contains(original);
+                        }
+                        return changedFieldNames.contains(original.getName())
+                                && changedFields.contains(new Mapping(Mapping.Type.FIELD, original.getName(), original.getClassName(), null));
+                    })
+                    .toArray());
+
+            int renamed = 0;
+            for(int row : rows) {
+                String name = remapWithCSRG(csrg, tiny.getOriginalMapping(row)).getName();
+                if(!name.equals(tiny.getName(namespace, row))) {
+                    tiny.setName(namespace, row, name);
+                    renamed++;
+                }
+            }
+            phase.setEntries(rows.length);
+            return renamed;
+        }
+    }
 
-        mappings = original.parallelStream().map(mapping -> {
-            Mapping remapped = tiny.getMapping(namespaceReplacedBy, mapping);
-            if(remapped == null) {
-                remapped = mapping;
+    /**
+     * Joins two csrg mappings on their original mappings.
+     * Both are walked in the order they are stored in, entries at the same position in both are compared directly
+     * and only the others are looked up, so csrg mappings made by editing the previous ones are joined without
+     * looking up the entries that didn't move.
+     * @return The original mappings that were added, removed or renamed
+     */
+    private static List<Mapping> changedEntries(CSRGMappingFile previousCsrg, CSRGMappingFile csrg) {
+        List<Mapping> changed = new ArrayList<>();
+        Iterator<Map.Entry<Mapping, Mapping>> previousEntries = previousCsrg.iterator();
+        Iterator<Map.Entry<Mapping, Mapping>> entries = csrg.iterator();
+        Map.Entry<Mapping, Mapping> previous = previousEntries.hasNext() ? previousEntries.next() : null;
+        Map.Entry<Mapping, Mapping> entry = entries.hasNext() ? entries.next() : null;
+        while(previous != null || entry != null) {
+            if(previous != null && entry != null && previous.getKey().equals(entry.getKey())) {
+                compareEntry(previous.getKey(), previous.getValue(), entry.getValue(), changed);
+                previous = previousEntries.hasNext() ? previousEntries.next() : null;
+                entry = entries.hasNext() ? entries.next() : null;
+                continue;
             }
 
-            return new Pair<>(mapping, remapped);
-        }).collect(Collectors.toMap(Pair::getKey, Pair::getValue));
+            Mapping moved = previous != null ? csrg.getRemapped(previous.getKey()) : null;
+            if(previous != null && moved == null) {
+                // removed
+                changed.add(previous.getKey());
+                previous = previousEntries.hasNext() ? previousEntries.next() : null;
+                continue;
+            }
+            Mapping movedFrom = entry != null ? previousCsrg.getRemapped(entry.getKey()) : null;
+            if(entry != null && movedFrom == null) {
+                // added
+                changed.add(entry.getKey());
+                entry = entries.hasNext() ? entries.next() : null;
+                continue;
+            }
 
-        tiny.removeNamespace(namespaceToReplace);
-        tiny.addNamespace(namespaceToReplace);
+            // both entries are in the other csrg mappings as well, at a different position
+            if(previous != null) {
+                compareEntry(previous.getKey(), previous.getValue(), moved, changed);
+                previous = previousEntries.hasNext() ? previousEntries.next() : null;
+            }
+            if(entry != null) {
+                compareEntry(entry.getKey(), movedFrom, entry.getValue(), changed);
+                entry = entries.hasNext() ? entries.next() : null;
+            }
+        }
+        return changed;
+    }
 
-        mappings.forEach((originalMapping, remappedMapping) -> tiny.addMapping(namespaceToReplace, originalMapping, remappedMapping));
+    private static void compareEntry(Mapping original, Mapping previous, Mapping remapped, List<Mapping> changed) {
+        if(!previous.getName().equals(remapped.getName())) {
+            changed.add(original);
+        }
     }
 
     /**
-     * Replaces the original namespace in the tiny mappings with another namespace.
-     * Due to how the {@link TinyMappingFile} class is implemented, this is a bit more complex than just replacing the namespace.
-     * The original namespace doesn't exist as a separate namespace, but only exists in every single stored
-     * Map with mappings as the key.
-     * This means that we have to go through every single mapping and replace the original namespace with the new namespace.
-     * Additionally, any references of classes in the class names or descriptors of the mappings will be replaced.
-     * @param tiny The tiny mappings
-     * @param namespaceReplacedBy The namespace that should replace the original namespace
-     * @param newOriginalMappingName The name of the new original namespace
+     * Merges a tiny file with the CSRG mappings while reading it, without loading the whole tiny file.
+     * Every line of the tiny file is written to the output as soon as it is read, with the name from
+     * the CSRG mappings added as the new namespace, so only the CSRG mappings are held in memory.
+     * <p>
+     * The output is the same as loading the tiny file, calling {@link #mergeTinyWithCSRG(TinyMappingFile, CSRGMappingFile, String)}
+     * and saving it again, as long as the tiny file doesn't contain the same original mapping twice.
+     * @param tiny The stream to read the tiny mappings from
+     * @param csrg The csrg mappings
+     * @param newNamespaceName The name of the new namespace that will be added to the tiny mappings
+     * @param out The stream to write the merged tiny mappings to
+     * @throws IOException If reading or writing fails, or the tiny mappings are invalid
      */
-    public static void replaceOriginalNamespace(TinyMappingFile tiny, String namespaceReplacedBy, String newOriginalMappingName) {
-        Map<String, Map<Mapping, Mapping>> namespaces = tiny.getNamespaces();
-        Map<Mapping, Mapping> replaceBy = new LinkedHashMap<>();
-        tiny.getOriginalMappings().forEach(mapping -> {
-            Mapping remapped = tiny.getMapping(namespaceReplacedBy, mapping);
-            if (remapped == null) {
-                remapped = mapping;
-            }
-
-            replaceBy.put(mapping, remapped);
-        });
+    public static void mergeTinyWithCSRG(InputStream tiny, CSRGMappingFile csrg, String newNamespaceName, OutputStream out) throws IOException {
+        mergeTinyWithCSRG(tiny, Collections.singletonMap(newNamespaceName, csrg), out);
+    }
 
-        namespaces.forEach((key, value) -> tiny.removeNamespace(key));
+    /**
+     * Merges a tiny file with multiple CSRG mappings while reading it, every one of them into a new namespace.
+     * The output is the same as merging them one after another with {@link #mergeTinyWithCSRG(InputStream, CSRGMappingFile, String, OutputStream)},
+     * but the tiny file is only read once.
+     * @param tiny The stream to read the tiny mappings from
+     * @param csrgs The csrg mappings by the name of the namespace they are merged into, the namespaces are added in the order of the map
+     * @param out The stream to write the merged tiny mappings to
+     * @throws IOException If reading or writing fails, or the tiny mappings are invalid
+     */
+    public static void mergeTinyWithCSRG(InputStream tiny, Map<String, CSRGMappingFile> csrgs, OutputStream out) throws IOException {
+        mergeTinyWithCSRG(tiny, csrgs, MissingNamePolicy.FILL, out);
+    }
 
-        Map<String, Map<Mapping, Mapping>> newNamespaces = new LinkedHashMap<>();
-        namespaces.forEach((key, value) -> {
-            if (key.equals(namespaceReplacedBy)) {
-                return;
-            }
-            Map<Mapping, Mapping> newMappings = new LinkedHashMap<>();
-            value.forEach((originalMapping, remappedMapping) -> {
-                Mapping newRemapped = replaceBy.get(originalMapping);
-                if (newRemapped == null) {
-                    newRemapped = remappedMapping;
+    /**
+     * Merges a tiny file with multiple CSRG mappings while reading it, every one of them into a new namespace.
+     * Lines with fewer names than the tiny file has namespaces are handled like saving handles missing names,
+     * except that {@link MissingNamePolicy#FAIL} fails at the first of them, after the lines before it were written.
+     * @param tiny The stream to read the tiny mappings from
+     * @param csrgs The csrg mappings by the name of the namespace they are merged into, the namespaces are added in the order of the map
+     * @param missingNames What is done with lines that miss names
+     * @param out The stream to write the merged tiny mappings to
+     * @throws IOException If reading or writing fails, or the tiny mappings are invalid
+     */
+    public static void mergeTinyWithCSRG(InputStream tiny, Map<String, CSRGMappingFile> csrgs, MissingNamePolicy missingNames, OutputStream out) throws IOException {
+        CSRGMappingFile[] files = csrgs.values().toArray(new CSRGMappingFile[0]);
+        List<String> namespaceNames = new ArrayList<>();
+        Counter filled = Metrics.counter("tiny.save.filled");
+        Counter skipped = Metrics.counter("tiny.save.skipped");
+        try (Phase phase = Metrics.start("merge-stream", String.join(",", csrgs.keySet()));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(tiny));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out), 1024 * 1024)) {
+            long entries = 0;
+            int namespaces = -1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                if (namespaces == -1) {
+                    if (!line.startsWith("v1")) {
+                        throw new InvalidMappingFormatException("Invalid version: " + line);
+                    }
+                    String[] header = (line.startsWith("v1\t") ? line.substring(3) : line).trim().split("\t");
+                    namespaceNames.addAll(Arrays.asList(header).subList(1, header.length));
+                    checkNewNamespaces(namespaceNames, csrgs.keySet());
+                    namespaces = header.length - 1;
+                    writer.write("v1\t" + String.join("\t", header) + "\t" + String.join("\t", csrgs.keySet()) + "\n");
+                    continue;
                 }
 
-                // Replace class names and descriptors in the newRemapped mapping
-                newRemapped = replaceClassReferences(newRemapped, replaceBy);
-//                System.out.println(newRemapped.getClassName());
-
-                newMappings.put(newRemapped, remappedMapping);
-            });
+                String[] parts = line.split("\t");
+                if (parts.length < namespaces + 1) {
+                    throw new InvalidMappingFormatException("Invalid line: " + line);
+                }
 
-            newNamespaces.put(key, newMappings);
-        });
+                Mapping original;
+                int firstName;
+                if (parts[0].equals("CLASS")) {
+                    firstName = 2;
+                } else if (parts[0].equals("FIELD") || parts[0].equals("METHOD")) {
+                    firstName = 4;
+                } else {
+                    // unknown entries aren't loaded, so they aren't saved either
+                    continue;
+                }
+                if (parts.length < firstName) {
+                    throw new InvalidMappingFormatException("Invalid line: " + line);
+                }
+                if (firstName == 2) {
+                    original = new Mapping(Mapping.Type.CLASS, parts[1]);
+                } else {
+                    Mapping.Type type = parts[0].equals("FIELD") ? Mapping.Type.FIELD : Mapping.Type.METHOD;
+                    original = new Mapping(type, parts[3], parts[1], parts[2]);
+                }
+                int names = parts.length - firstName;
+                if (names > namespaces) {
+                    throw new InvalidMappingFormatException("Too many names for " + original);
+                }
+                if (namespaces > 0 && names == 0) {
+                    // only mappings that are mapped in the first namespace are saved
+                    continue;
+                }
+                if (names < namespaces) {
+                    if (missingNames == MissingNamePolicy.SKIP) {
+                        skipped.increment();
+                        continue;
+                    }
+                    if (missingNames == MissingNamePolicy.FAIL) {
+                        throw new IllegalStateException("Missing mapping for " + original + " in " + namespaceNames.get(names));
+                    }
+                }
 
-        tiny.setOriginalNamespaceName(newOriginalMappingName);
-        newNamespaces.forEach((key, value) -> {
-            tiny.addNamespace(key);
-            value.forEach((originalMapping, remappedMapping) -> tiny.addMapping(key, originalMapping, remappedMapping));
-        });
+                writer.write(String.join("\t", parts));
+                for (int i = names; i < namespaces; i++) {
+                    // filled in with the original name, like saving does
+                    writer.write('\t');
+                    writer.write(original.getName());
+                    filled.increment();
+                }
+                for (CSRGMappingFile csrg : files) {
+                    writer.write('\t');
+                    writer.write(remapWithCSRG(csrg, original).getName());
+                }
+                writer.write('\n');
+                phase.setEntries(++entries);
+            }
+        }
     }
 
     /**
-     * Replaces class references in the class names or descriptors of the mapping.
-     * @param mapping The mapping to replace class references in
-     * @param replaceBy The map of original mappings to their replacements
-     * @return The mapping with replaced class references
+     * Looks up the name a mapping has in the csrg mappings.
+     * @return The remapped mapping, or the original mapping if the csrg mappings don't contain it
      */
-    private static Mapping replaceClassReferences(Mapping mapping, Map<Mapping, Mapping> replaceBy) {
-        String className = mapping.getClassName();
-        String descriptor = mapping.getDescriptor();
-
-        if (className != null) {
-            Mapping remappedClassName = replaceBy.get(new Mapping(Mapping.Type.CLASS, className));
-            if (remappedClassName != null) {
-                className = remappedClassName.getName();
-            }
-        }
+    private static Mapping remapWithCSRG(CSRGMappingFile csrg, Mapping originalMapping) {
+        Mapping remappedMapping = csrg.getRemapped(originalMapping);
 
-        // Replace descriptor class names
-        if (descriptor != null) {
-//            System.out.println("Descriptor: " + descriptor);
-            descriptor = replaceClassNamesInDescriptor(descriptor, replaceBy);
+        if (remappedMapping == null && originalMapping.getType() == Mapping.Type.FIELD) {
+            // Fields in csrg do not have a descriptor, only name and class name
+            remappedMapping = csrg.getRemapped(Mapping.Type.FIELD, originalMapping.getName(), originalMapping.getClassName(), null);
         }
 
-//        System.out.println("Original mapping: " + mapping);
-//        System.out.println("getClassName(): " + mapping.getClassName());
-//        System.out.println("Class name: " + className);
-//        System.out.println("Descriptor: " + descriptor);
-
-        return new Mapping(mapping.getType(), mapping.getName(), className, descriptor);
+        if (remappedMapping == null) {
+            CSRG_MISSES.increment();
+            remappedMapping = originalMapping;
+        } else {
+            CSRG_HITS.increment();
+        }
+        return remappedMapping;
     }
 
     /**
-     * Replaces class names in a descriptor string using the provided map of replacements.
-     * @param descriptor The descriptor string to replace class names in
-     * @param replaceBy The map of original mappings to their replacements
-     * @return The descriptor string with replaced class names
+     * Replaces a namespace in the tiny mappings.
+     * This means that you can for example make the namespace called official take all fields from the namespace called named
+     * spigot into itself, deleting the namespace called spigot.
+     * @param tiny The tiny mappings
+     * @param namespaceToReplace The namespace that should be replaced
+     * @param namespaceReplacedBy The namespace that should replace the other namespace
      */
-    private static String replaceClassNamesInDescriptor(String descriptor, Map<Mapping, Mapping> replaceBy) {
-        if (descriptor == null || descriptor.isEmpty()) {
-            return descriptor;
+    public static void replaceNamespace(TinyMappingFile tiny, String namespaceToReplace, String namespaceReplacedBy) {
+        if(namespaceToReplace.equals(namespaceReplacedBy)) {
+            return;
         }
 
-        StringBuilder newDescriptor = new StringBuilder();
-        int length = descriptor.length();
-        for (int i = 0; i < length; i++) {
-            char c = descriptor.charAt(i);
-            if (c == 'L') {
-                int start = i;
-                int end = descriptor.indexOf(';', start);
-                if (end != -1) {
-                    String className = descriptor.substring(start + 1, end);
-                    Mapping remappedClassName = replaceBy.get(new Mapping(Mapping.Type.CLASS, className));
-                    if (remappedClassName != null) {
-                        className = remappedClassName.getName();
-                    }
-                    newDescriptor.append('L').append(className).append(';');
-                    i = end;
-                    continue;
+        try(Phase phase = Metrics.start("replace-namespace", namespaceToReplace)) {
+            ExecutionContext context = ExecutionContext.current();
+            // indexed by row, so the mappings are added in the same order in every context
+            Mapping[] mappings = context.call(() -> context.stream(tiny.streamOriginalMappings()).map(mapping -> {
+                Mapping remapped = tiny.getMapping(namespaceReplacedBy, mapping);
+                if(remapped == null) {
+                    remapped = mapping;
                 }
+
+                return remapped;
+            }).toArray(Mapping[]::new));
+
+            tiny.removeNamespace(namespaceToReplace);
+            tiny.addNamespace(namespaceToReplace);
+
+            for(int row = 0; row < mappings.length; row++) {
+                tiny.addMapping(namespaceToReplace, tiny.getOriginalMapping(row), mappings[row]);
             }
-            newDescriptor.append(c);
+            phase.setEntries(mappings.length);
         }
+    }
 
-        return newDescriptor.toString();
+    /**
+     * Replaces the original namespace in the tiny mappings with another namespace.
+     * Every original mapping is renamed to the name it has in the other namespace, which is removed afterwards.
+     * Additionally, any references of classes in the class names or descriptors of the mappings will be replaced.
+     * The mappings are re-keyed in place, see {@link TinyMappingFile#replaceOriginalNamespace(String, String, java.util.function.UnaryOperator)}.
+     * @param tiny The tiny mappings
+     * @param namespaceReplacedBy The namespace that should replace the original namespace
+     * @param newOriginalMappingName The name of the new original namespace
+     */
+    public static void replaceOriginalNamespace(TinyMappingFile tiny, String namespaceReplacedBy, String newOriginalMappingName) {
+        try(Phase phase = Metrics.start("replace-original", namespaceReplacedBy)) {
+            DescriptorRemapper remapper = DescriptorRemapper.forNamespace(tiny, namespaceReplacedBy);
+            tiny.replaceOriginalNamespace(namespaceReplacedBy, newOriginalMappingName, remapper::remapReferences);
+            phase.setEntries(tiny.size());
+        }
     }
 
     /**
@@ -212,25 +415,39 @@ public class MappingMerger {
     }
 
     public static CSRGMappingFile createCSRGfromTiny(TinyMappingFile tiny, String origNamespace, String remapNamespace) {
-        CSRGMappingFile csrg = new CSRGMappingFile();
-
-        List<Mapping> mappings = tiny.getMappings(origNamespace);
-        Map<String, Map<Mapping, Mapping>> namespaces = tiny.getNamespaces();
+        try(Phase phase = Metrics.start("create-csrg", origNamespace + " -> " + remapNamespace)) {
+            CSRGMappingFile csrg = createCSRG(tiny, origNamespace, remapNamespace);
+            phase.setEntries(csrg.size());
+            return csrg;
+        }
+    }
 
-        Map<Mapping, Mapping> mappingMap = mappings.parallelStream().map(mapping -> {
-            Mapping remapped = tiny.getMappingFromNamespace(origNamespace, remapNamespace, mapping);
-            if (remapped == null) {
-                remapped = mapping;
-            }
+    private static CSRGMappingFile createCSRG(TinyMappingFile tiny, String origNamespace, String remapNamespace) {
+        CSRGMappingFile csrg = new CSRGMappingFile();
+        csrg.setSymbolTable(tiny.getSymbolTable());
+
+        NamespaceTranslation translation = tiny.getTranslation(origNamespace, remapNamespace);
+        DescriptorRemapper remapper = DescriptorRemapper.forNamespace(tiny, origNamespace);
+
+        ExecutionContext context = ExecutionContext.current();
+        // collected in the order of the rows, so the csrg mappings have the same order in every context
+        List<Pair<Mapping, Mapping>> mappings = context.call(() -> context.stream(IntStream.range(0, translation.size()))
+                .filter(row -> translation.getFrom(row) != null)
+                .mapToObj(row -> {
+                    Mapping mapping = translation.getFrom(row);
+                    Mapping remapped = translation.getTo(row);
+                    if (remapped == null) {
+                        remapped = mapping;
+                    }
 
-            // replace the classname and descriptor to match the new original name (mapping)
-            Mapping newMapping = replaceClassReferences(mapping, namespaces.get(origNamespace));
-            remapped = replaceClassReferences(remapped, namespaces.get(origNamespace));
+                    // replace the classname and descriptor to match the new original name (mapping)
+                    Mapping newMapping = remapper.remapReferences(mapping);
+                    remapped = remapper.remapReferences(remapped);
 
-            return new Pair<>(newMapping, remapped);
-        }).collect(Collectors.toMap(Pair::getKey, Pair::getValue));
+                    return new Pair<>(newMapping, remapped);
+                }).collect(Collectors.toList()));
 
-        mappingMap.forEach(csrg::addMapping);
+        mappings.forEach(pair -> csrg.addMapping(pair.getKey(), pair.getValue()));
 
         return csrg;
     }
@@ -249,85 +466,9 @@ public class MappingMerger {
      * @param repackageOriginal Whether to repackage the original namespace to the new package
      */
     public static void applyPackageMapping(TinyMappingFile toApplyTo, CSRGMappingFile packageMapping, boolean repackageOriginal) {
-        packageMapping.forEach((from, to) -> {
-            if(from.getType() != Mapping.Type.CLASS || to.getType() != Mapping.Type.CLASS) {
-                return;
-            }
-
-            String fromName = from.getName();
-            String toName = to.getName();
-
-            // csrg mapping is iterable, tiny mapping isn't
-            Map<String, Map<Mapping, Mapping>> namespaces = new LinkedHashMap<>();
-            Map<String, Map<Mapping, Mapping>> replaced = new LinkedHashMap<>();
-            replaced.put("original", new LinkedHashMap<>());
-            toApplyTo.getNamespaces().forEach((namespace, mappings) -> {
-                Map<Mapping, Mapping> newMapping = new LinkedHashMap<>();
-                replaced.put(namespace, new LinkedHashMap<>());
-                mappings.forEach((original, remapped) -> {
-                    Mapping newOriginal = original;
-                    Mapping newRemapped = remapped;
-                    if(repackageOriginal) {
-                        newOriginal = replacePackage(original, fromName, toName);
-                    }
-                    newRemapped = replacePackage(remapped, fromName, toName);
-
-                    if(original.getType() == Mapping.Type.CLASS) {
-                        replaced.get("original").put(original, newOriginal);
-                        replaced.get(namespace).put(remapped, newRemapped);
-                    }
-
-                    newMapping.put(newOriginal, newRemapped);
-                });
-                namespaces.put(namespace, newMapping);
-            });
-
-            Map<String, Map<Mapping, Mapping>> newNamespaces = new LinkedHashMap<>();
-            namespaces.forEach((namespace, mappings) -> {
-                Map<Mapping, Mapping> newMapping = new LinkedHashMap<>();
-                mappings.forEach((original, remapped) -> {
-                    // replace descriptors
-                    Mapping newOriginal = original;
-                    Mapping newRemapped = remapped;
-
-                    if(newOriginal.getDescriptor() != null) {
-                        newOriginal = new Mapping(newOriginal.getType(), newOriginal.getName(), newOriginal.getClassName(), replaceClassNamesInDescriptor(original.getDescriptor(), replaced.get("original")));
-                        newRemapped = new Mapping(newRemapped.getType(), newRemapped.getName(), newRemapped.getClassName(), replaceClassNamesInDescriptor(remapped.getDescriptor(), replaced.get(namespace)));
-                    }
-
-                    newMapping.put(newOriginal, newRemapped);
-                });
-                newNamespaces.put(namespace, newMapping);
-            });
-
-            newNamespaces.forEach((namespace, mappings) -> {
-                toApplyTo.removeNamespace(namespace);
-                toApplyTo.addNamespace(namespace);
-                mappings.forEach((original, remapped) -> {
-                    toApplyTo.addMapping(namespace, original, remapped);
-                });
-            });
-        });
-    }
-
-    private static Mapping replacePackage(Mapping original, String originalPackage, String newPackage) {
-        String newClassName = original.getType() == Mapping.Type.CLASS ? original.getName() : original.getClassName();
-        if(originalPackage.equals("./")) {
-            if(!newClassName.contains("/")) newClassName = newPackage + newClassName;
-        } else {
-            int lastSlashIndex = newClassName.lastIndexOf("/") + 1;
-            if(lastSlashIndex == 0) {
-                return original;
-            }
-            String packageName = newClassName.substring(0, lastSlashIndex);
-            if(packageName.equals(originalPackage)) {
-                newClassName = newPackage + newClassName.substring(lastSlashIndex);
-            }
-        }
-        if(original.getType() == Mapping.Type.CLASS) {
-            return new Mapping(original.getType(), newClassName);
-        } else {
-            return new Mapping(original.getType(), original.getName(), newClassName, original.getDescriptor());
+        try(Phase phase = Metrics.start("package-mapping")) {
+            new PackageRemapper(packageMapping).apply(toApplyTo, repackageOriginal);
+            phase.setEntries(toApplyTo.size());
         }
     }
 }
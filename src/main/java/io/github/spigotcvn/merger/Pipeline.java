@@ -0,0 +1,244 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.Saveable;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs multiple operations one after another on the same tiny mappings, without saving and loading them in between.
+ * <p>
+ * Every step is one line, made of the name of the step and its arguments separated by whitespace.
+ * Empty lines and lines starting with # are ignored, so paths can't contain whitespace. The following steps exist:
+ * <ul>
+ *     <li>{@code MERGE <csrg file> <namespace> [<csrg file> <namespace>...]} merges csrg mappings into new namespaces, all in one pass</li>
+ *     <li>{@code PACKAGE_MAPPINGS <csrg file> [true]} applies package mappings, true also repackages the original namespace</li>
+ *     <li>{@code REPLACE_ORIGINAL <namespace> [new name]} makes a namespace the original namespace</li>
+ *     <li>{@code CREATE_CSRG_FROM_TINY <namespace> <remap namespace> <csrg file>} saves two namespaces as csrg mappings</li>
+ *     <li>{@code SAVE <tiny file>} saves the tiny mappings like they are at this point</li>
+ * </ul>
+ * Files are only written by the steps that save them. Saving runs in the background on the threads of the
+ * {@link ExecutionContext} while the following steps that don't change the mappings run, steps that change
+ * the mappings wait until the tiny mappings are saved. In a sequential context everything is saved right away instead.
+ */
+public class Pipeline {
+    private final List<Step> steps;
+
+    private Pipeline(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Parses the steps of a pipeline.
+     * @param lines The steps, one per line
+     * @return The pipeline
+     * @throws IllegalArgumentException If a step is invalid
+     */
+    public static Pipeline parse(List<String> lines) {
+        List<Step> steps = new ArrayList<>();
+        for(String line : lines) {
+            String trimmed = line.trim();
+            if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            steps.add(parseStep(trimmed.split("\\s+")));
+        }
+        return new Pipeline(steps);
+    }
+
+    private static Step parseStep(String[] parts) {
+        String name = parts[0];
+        List<String> args = Arrays.asList(parts).subList(1, parts.length);
+        switch(name) {
+            case "MERGE":
+                checkArguments(name, args, 2, Integer.MAX_VALUE);
+                // pairs of csrg file and namespace, every namespace only once
+                Set<String> namespaces = new HashSet<>();
+                for(int i = 1; i < args.size(); i += 2) {
+                    namespaces.add(args.get(i));
+                }
+                if(args.size() % 2 != 0 || namespaces.size() != args.size() / 2) {
+                    throw new IllegalArgumentException("Invalid arguments for pipeline step " + name + ": " + args);
+                }
+                return new Step(name, args, true, (run, tiny) -> {
+                    Map<String, CSRGMappingFile> csrgs = new LinkedHashMap<>();
+                    for(int i = 0; i < args.size(); i += 2) {
+                        csrgs.put(args.get(i + 1), run.loadCSRG(args.get(i)));
+                    }
+                    MappingMerger.mergeTinyWithCSRG(tiny, csrgs);
+                });
+            case "PACKAGE_MAPPINGS":
+                checkArguments(name, args, 1, 2);
+                boolean repackageOriginal = args.size() == 2 && Boolean.parseBoolean(args.get(1));
+                return new Step(name, args, true, (run, tiny) -> {
+                    CSRGMappingFile csrg = run.loadCSRG(args.get(0));
+                    MappingMerger.applyPackageMapping(tiny, csrg, repackageOriginal);
+                });
+            case "REPLACE_ORIGINAL":
+                checkArguments(name, args, 1, 2);
+                String newName = args.size() == 2 ? args.get(1) : args.get(0);
+                return new Step(name, args, true,
+                        (run, tiny) -> MappingMerger.replaceOriginalNamespace(tiny, args.get(0), newName));
+            case "CREATE_CSRG_FROM_TINY":
+                checkArguments(name, args, 3, 3);
+                return new Step(name, args, false, (run, tiny) -> {
+                    // the csrg mappings don't depend on the tiny mappings anymore, so they can be saved while the next steps run
+                    CSRGMappingFile csrg = MappingMerger.createCSRGfromTiny(tiny, args.get(0), args.get(1));
+                    run.save(csrg, new File(args.get(2)), false);
+                });
+            case "SAVE":
+                checkArguments(name, args, 1, 1);
+                return new Step(name, args, false, (run, tiny) -> run.save(tiny, new File(args.get(0)), true));
+            default:
+                throw new IllegalArgumentException("Unknown pipeline step: " + name);
+        }
+    }
+
+    private static void checkArguments(String name, List<String> args, int min, int max) {
+        if(args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException("Invalid arguments for pipeline step " + name + ": " + args);
+        }
+    }
+
+    /**
+     * Runs all steps on the tiny mappings and waits until everything is saved.
+     * @param tiny The tiny mappings, they are changed by the steps
+     */
+    public void run(TinyMappingFile tiny) {
+        run(tiny, null);
+    }
+
+    /**
+     * Runs all steps on the tiny mappings, saves the resulting tiny mappings and waits until everything is saved.
+     * @param tiny The tiny mappings, they are changed by the steps
+     * @param out The file to save the resulting tiny mappings to, or null to not save them
+     */
+    public void run(TinyMappingFile tiny, File out) {
+        run(tiny, out, MappingLoader.create(tiny.getSymbolTable()));
+    }
+
+    /**
+     * Runs all steps on the tiny mappings, saves the resulting tiny mappings and waits until everything is saved.
+     * @param tiny The tiny mappings, they are changed by the steps
+     * @param out The file to save the resulting tiny mappings to, or null to not save them
+     * @param loader Loads the csrg mappings used by the steps
+     */
+    public void run(TinyMappingFile tiny, File out, MappingLoader loader) {
+        ExecutionContext context = ExecutionContext.current();
+        Run run = new Run(context, context.isSequential() ? null : context.executor(), loader);
+        for(Step step : steps) {
+            if(step.changesMappings) {
+                run.awaitTinySaves();
+            }
+            System.out.println("Running " + step + ".");
+            try(Phase phase = Metrics.start("pipeline." + step.name, String.join(" ", step.args))) {
+                step.action.run(run, tiny);
+                phase.setEntries(tiny.size());
+            }
+        }
+        if(out != null) {
+            run.save(tiny, out, true);
+        }
+        run.awaitAll();
+    }
+
+    /**
+     * The state of a single run of the pipeline.
+     */
+    private static class Run {
+        private final ExecutionContext context;
+        // null if everything is saved right away
+        private final Executor executor;
+        private final MappingLoader loader;
+        private final List<CompletableFuture<Void>> tinySaves = new ArrayList<>();
+        private final List<CompletableFuture<Void>> saves = new ArrayList<>();
+
+        private Run(ExecutionContext context, Executor executor, MappingLoader loader) {
+            this.context = context;
+            this.executor = executor;
+            this.loader = loader;
+        }
+
+        private CSRGMappingFile loadCSRG(String path) {
+            return loader.loadCSRG(new File(path));
+        }
+
+        // the phase is only there to be measured
+        @SuppressWarnings("try")
+        private void save(Saveable mappings, File file, boolean readsTiny) {
+            Runnable task = () -> {
+                try(Phase phase = Metrics.start("pipeline.save", file.getName())) {
+                    mappings.saveToFile(file);
+                }
+            };
+            if(executor == null) {
+                task.run();
+                return;
+            }
+            // the save uses the context of the pipeline for its own parallel work
+            CompletableFuture<Void> save = CompletableFuture.runAsync(() -> context.run(task), executor);
+            saves.add(save);
+            if(readsTiny) {
+                tinySaves.add(save);
+            }
+        }
+
+        private void awaitTinySaves() {
+            await(tinySaves);
+            tinySaves.clear();
+        }
+
+        private void awaitAll() {
+            await(saves);
+            saves.clear();
+            tinySaves.clear();
+        }
+
+        private static void await(List<CompletableFuture<Void>> futures) {
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if(e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static class Step {
+        private final String name;
+        private final List<String> args;
+        // steps that change the mappings have to wait until the tiny mappings are saved
+        private final boolean changesMappings;
+        private final Action action;
+
+        private Step(String name, List<String> args, boolean changesMappings, Action action) {
+            this.name = name;
+            this.args = args;
+            this.changesMappings = changesMappings;
+            this.action = action;
+        }
+
+        @Override
+        public String toString() {
+            return args.isEmpty() ? name : name + " " + String.join(" ", args);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run(Run run, TinyMappingFile tiny);
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.spigotcvn.merger;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the output files of jobs on disk, so running a job with the same inputs again only copies its output.
+ * <p>
+ * Results are stored by a hash of the contents of every input file, the arguments the output depends on and the code
+ * of the merger itself, a result is reused no matter where its inputs are or what they are called. Results are stored in a directory that
+ * multiple processes can use at once: they are written to a temporary file first and moved into place atomically.
+ * The last modification time of a result is its last use, once the total size of the results is over the limit
+ * the least recently used ones are deleted.
+ */
+public class ResultCache {
+    // changes whenever the key of the same job changes, so old results aren't reused
+    private static final int FORMAT = 3;
+    private static final String LOCK_FILE = ".lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // temporary files older than this are left over by processes that died while storing them
+    private static final long STALE_TEMP_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static String codeIdentity;
+
+    private final Path directory;
+    private final long maxSize;
+    private final boolean link;
+
+    /**
+     * @param directory The directory to store the results in, created if it doesn't exist
+     * @param maxSize The maximum total size in bytes of the stored results
+     * @param link Whether restored results are hard links to the stored ones instead of copies, the restored files
+     *             must not be changed in place then, as that would change the stored results as well
+     */
+    public ResultCache(File directory, long maxSize, boolean link) {
+        if(directory == null || maxSize < 0) {
+            throw new IllegalArgumentException("Invalid arguments: " + directory + ", " + maxSize);
+        }
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+        this.link = link;
+    }
+
+    /**
+     * Computes the key of a job from the contents of its input files, without parsing them.
+     * The key also depends on the code that is running, a result of another build of the merger is never reused.
+     * @param arguments Everything besides the input files the output depends on, like the mode and the namespaces
+     * @param inputs The files the job reads
+     * @return The key
+     */
+    public static String key(List<String> arguments, List<File> inputs) {
+        return key(arguments, inputs, codeIdentity());
+    }
+
+    static String key(List<String> arguments, List<File> inputs, String codeIdentity) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(FORMAT);
+        hasher.putString(codeIdentity, StandardCharsets.UTF_8);
+        hasher.putInt(arguments.size());
+        for(String argument : arguments) {
+            // null and "null" have to differ
+            hasher.putBoolean(argument != null);
+            hasher.putString(String.valueOf(argument), StandardCharsets.UTF_8);
+            hasher.putInt(0);
+        }
+        hasher.putInt(inputs.size());
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for(File input : inputs) {
+            try(FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+                hasher.putLong(channel.size());
+                while(channel.read(buffer) != -1) {
+                    buffer.flip();
+                    hasher.putBytes(buffer);
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Hashes the code that is running, so a result is never reused by a build that could compute it differently.
+     * That is the jar the merger runs from, or every file in the directory of classes it runs from.
+     * If the code can't be located, the identity is random and results are only reused within the same process.
+     * @return The hash, computed once per process
+     */
+    static synchronized String codeIdentity() {
+        if(codeIdentity == null) {
+            codeIdentity = UUID.randomUUID().toString();
+            CodeSource source = ResultCache.class.getProtectionDomain().getCodeSource();
+            if(source != null && source.getLocation() != null) {
+                try {
+                    codeIdentity = hashFiles(Paths.get(source.getLocation().toURI()));
+                } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                    // not a file, like a class loaded from memory
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return codeIdentity;
+    }
+
+    private static String hashFiles(Path location) throws IOException {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        if(!Files.isDirectory(location)) {
+            hasher.putBytes(Files.readAllBytes(location));
+            return hasher.hash().toString();
+        }
+        List<Path> files;
+        try(Stream<Path> walk = Files.walk(location)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for(Path file : files) {
+            hasher.putString(location.relativize(file).toString(), StandardCharsets.UTF_8);
+            hasher.putInt(0);
+            byte[] bytes = Files.readAllBytes(file);
+            hasher.putInt(bytes.length);
+            hasher.putBytes(bytes);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Copies or links a stored result to the output file.
+     * @param key The key of the job
+     * @param out The output file of the job
+     * @return Whether a result was stored for the key
+     */
+    public boolean restore(String key, File out) {
+        Path result = directory.resolve(key);
+        if(!Files.isRegularFile(result)) {
+            return false;
+        }
+        try {
+            if(!link || !tryLink(result, out.toPath())) {
+                Files.copy(result, out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (NoSuchFileException e) {
+            // another process evicted the result in the meantime
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        touch(result);
+        return true;
+    }
+
+    /**
+     * Stores the output file of a job and evicts the least recently used results if the cache is too big.
+     * @param key The key of the job
+     * @param out The output file of the job
+     */
+    public void store(String key, File out) {
+        Path result = directory.resolve(key);
+        try {
+            Files.createDirectories(directory);
+            if(Files.isRegularFile(result)) {
+                touch(result);
+                return;
+            }
+            Path temp = Files.createTempFile(directory, key + ".", TEMP_SUFFIX);
+            try {
+                Files.copy(out.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, result, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AccessDeniedException e) {
+                // another process stored the same result at the same time
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            evict();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used results until the total size is within the limit.
+     * Only one process evicts at a time, results that can't be deleted are skipped.
+     */
+    // the lock is only held, never used
+    @SuppressWarnings("try")
+    private void evict() throws IOException {
+        try(FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = lockChannel.lock()) {
+            List<Result> results = new ArrayList<>();
+            long size = 0;
+            long now = System.currentTimeMillis();
+            try(Stream<Path> files = Files.list(directory)) {
+                for(Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if(name.equals(LOCK_FILE)) {
+                        continue;
+                    }
+                    try {
+                        long lastUsed = Files.getLastModifiedTime(file).toMillis();
+                        if(name.endsWith(TEMP_SUFFIX)) {
+                            if(now - lastUsed > STALE_TEMP_AGE) {
+                                Files.deleteIfExists(file);
+                            }
+                            continue;
+                        }
+                        Result result = new Result(file, Files.size(file), lastUsed);
+                        results.add(result);
+                        size += result.size;
+                    } catch (NoSuchFileException e) {
+                        // deleted while listing
+                    }
+                }
+            }
+
+            results.sort(Comparator.comparingLong(result -> result.lastUsed));
+            for(Result result : results) {
+                if(size <= maxSize) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(result.file);
+                    size -= result.size;
+                } catch (IOException e) {
+                    // still open somewhere, it is evicted the next time
+                }
+            }
+        }
+    }
+
+    private static boolean tryLink(Path result, Path out) throws IOException {
+        Files.deleteIfExists(out);
+        try {
+            Files.createLink(out, result);
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // different file systems or no hard links, copied instead
+            return false;
+        }
+    }
+
+    private static void touch(Path result) {
+        try {
+            Files.setLastModifiedTime(result, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted in the meantime or read only, it's only used for eviction anyway
+        }
+    }
+
+    private static class Result {
+        private final Path file;
+        private final long size;
+        private final long lastUsed;
+
+        private Result(Path file, long size, long lastUsed) {
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -2,7 +2,13 @@ package io.github.spigotcvn.merger;
 
 public enum RunMode {
     MERGE,
+    REMERGE,
     REPLACE_ORIGINAL,
     CREATE_CSRG_FROM_TINY,
-    PACKAGE_MAPPINGS
+    PACKAGE_MAPPINGS,
+    SNAPSHOT,
+    PIPELINE,
+    DIFF,
+    VALIDATE,
+    DAEMON
 }
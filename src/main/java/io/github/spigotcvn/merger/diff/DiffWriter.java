@@ -0,0 +1,107 @@
+package io.github.spigotcvn.merger.diff;
+
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.Json;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes changes found by {@link MappingDiff} one per line, followed by the amount of changes per namespace and type.
+ * Changes have to be written from one thread at a time.
+ */
+public class DiffWriter implements Consumer<MappingChange>, Closeable {
+    public enum Format {
+        /** The lines of {@link MappingChange#toString()}, followed by one comment line per namespace and type */
+        TEXT,
+        /** One JSON object per line, followed by one object with the summary */
+        JSON
+    }
+
+    private final Writer writer;
+    private final Format format;
+    // added, removed and renamed mappings per namespace and type, the namespace of csrg mappings is null
+    private final Map<String, Map<Mapping.Type, long[]>> counts = new LinkedHashMap<>();
+
+    public DiffWriter(OutputStream os, Format format) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        this.format = format;
+    }
+
+    @Override
+    public void accept(MappingChange change) {
+        counts.computeIfAbsent(change.getNamespace(), namespace -> new EnumMap<>(Mapping.Type.class))
+                .computeIfAbsent(change.getOriginal().getType(), type -> new long[3])[change.getKind().ordinal()]++;
+        try {
+            writer.write(format == Format.TEXT ? change.toString() : toJson(change));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the summary and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if(format == Format.TEXT) {
+                for(Map.Entry<String, Map<Mapping.Type, long[]>> namespace : counts.entrySet()) {
+                    for(Map.Entry<Mapping.Type, long[]> type : namespace.getValue().entrySet()) {
+                        long[] count = type.getValue();
+                        writer.write("# " + (namespace.getKey() == null ? "" : namespace.getKey() + " ") + type.getKey() + ": "
+                                + count[0] + " added, " + count[1] + " removed, " + count[2] + " renamed\n");
+                    }
+                }
+            } else {
+                StringBuilder summary = new StringBuilder("{\"summary\":[");
+                String separator = "";
+                for(Map.Entry<String, Map<Mapping.Type, long[]>> namespace : counts.entrySet()) {
+                    for(Map.Entry<Mapping.Type, long[]> type : namespace.getValue().entrySet()) {
+                        long[] count = type.getValue();
+                        summary.append(separator).append('{');
+                        if(namespace.getKey() != null) {
+                            summary.append("\"namespace\":").append(Json.quote(namespace.getKey())).append(',');
+                        }
+                        summary.append("\"type\":\"").append(type.getKey()).append("\",")
+                                .append("\"added\":").append(count[0]).append(',')
+                                .append("\"removed\":").append(count[1]).append(',')
+                                .append("\"renamed\":").append(count[2]).append('}');
+                        separator = ",";
+                    }
+                }
+                writer.write(summary.append("]}\n").toString());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String toJson(MappingChange change) {
+        Mapping original = change.getOriginal();
+        StringBuilder json = new StringBuilder("{\"kind\":\"").append(change.getKind()).append('"');
+        if(change.getNamespace() != null) {
+            json.append(",\"namespace\":").append(Json.quote(change.getNamespace()));
+        }
+        json.append(",\"type\":\"").append(original.getType()).append('"');
+        if(original.getClassName() != null) {
+            json.append(",\"class\":").append(Json.quote(original.getClassName()));
+        }
+        json.append(",\"name\":").append(Json.quote(original.getName()));
+        if(original.getDescriptor() != null) {
+            json.append(",\"descriptor\":").append(Json.quote(original.getDescriptor()));
+        }
+        if(change.getOldName() != null) {
+            json.append(",\"old\":").append(Json.quote(change.getOldName()));
+        }
+        if(change.getNewName() != null) {
+            json.append(",\"new\":").append(Json.quote(change.getNewName()));
+        }
+        return json.append('}').toString();
+    }
+}
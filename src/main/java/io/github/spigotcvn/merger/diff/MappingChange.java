@@ -0,0 +1,99 @@
+package io.github.spigotcvn.merger.diff;
+
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+/**
+ * A difference between the names an original mapping has in a namespace of two mapping files.
+ */
+public final class MappingChange {
+    public enum Kind {
+        /** The mapping only has a name in the newer file */
+        ADDED,
+        /** The mapping only has a name in the older file */
+        REMOVED,
+        /** The mapping has a different name in both files */
+        RENAMED
+    }
+
+    private final String namespace;
+    private final Mapping original;
+    private final String oldName;
+    private final String newName;
+
+    MappingChange(String namespace, Mapping original, String oldName, String newName) {
+        if(oldName == null && newName == null) {
+            throw new IllegalArgumentException("Nothing changed for " + original);
+        }
+        this.namespace = namespace;
+        this.original = original;
+        this.oldName = oldName;
+        this.newName = newName;
+    }
+
+    public Kind getKind() {
+        if(oldName == null) {
+            return Kind.ADDED;
+        }
+        return newName == null ? Kind.REMOVED : Kind.RENAMED;
+    }
+
+    /**
+     * @return The namespace the name changed in, null for csrg mappings as they only have one
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public Mapping getOriginal() {
+        return original;
+    }
+
+    /**
+     * @return The name in the older file, or null if it was added
+     */
+    public String getOldName() {
+        return oldName;
+    }
+
+    /**
+     * @return The name in the newer file, or null if it was removed
+     */
+    public String getNewName() {
+        return newName;
+    }
+
+    /**
+     * @return The original mapping in a compact form, like {@code a}, {@code a.b:I} or {@code a.c(I)V}
+     */
+    public String getOriginalText() {
+        return original.toCompactString();
+    }
+
+    /**
+     * @return The change as a single line, like {@code ~ named METHOD a.c(I)V old -> new}
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        switch(getKind()) {
+            case ADDED:
+                line.append("+ ");
+                break;
+            case REMOVED:
+                line.append("- ");
+                break;
+            default:
+                line.append("~ ");
+        }
+        if(namespace != null) {
+            line.append(namespace).append(' ');
+        }
+        line.append(original.getType()).append(' ').append(getOriginalText()).append(' ');
+        if(getKind() == Kind.RENAMED) {
+            line.append(oldName).append(" -> ").append(newName);
+        } else {
+            line.append(oldName != null ? oldName : newName);
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package io.github.spigotcvn.merger.diff;
+
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares two tiny or two csrg mapping files by their original mappings.
+ * <p>
+ * Every original mapping is compared in every namespace of both files, a namespace only one of the files has
+ * counts as a namespace without any names in the other one. Original mappings only one of the files has are reported
+ * as added or removed in every namespace they have a name in.
+ * <p>
+ * The smaller file is indexed by its original mappings, which is the only thing held in memory. The entries of the
+ * bigger file are looked up in that index in parallel, the entries of the smaller file that weren't found are reported
+ * at the end. The changes are reported in the order of the bigger file first and the smaller file second, no matter how
+ * many threads are used.
+ */
+public final class MappingDiff {
+    // the bigger file is read in batches of about this many bytes
+    private static final int BATCH_SIZE = 8 * 1024 * 1024;
+
+    private MappingDiff() {
+    }
+
+    /**
+     * @param older The older mappings
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public static void diff(TinyMappingFile older, TinyMappingFile newer, Consumer<MappingChange> changes) {
+        checkOriginalNamespaces(older, newer);
+        List<String> namespaces = namespaces(older.getNamespaceNames(), newer.getNamespaceNames());
+        try(Phase phase = Metrics.start("diff", "tiny")) {
+            boolean olderIndexed = older.size() <= newer.size();
+            Differ differ = new Differ(namespaces, tinySide(olderIndexed ? older : newer, namespaces), olderIndexed, changes);
+            differ.compare(tinySide(olderIndexed ? newer : older, namespaces));
+            differ.finish();
+            phase.setEntries(differ.entries);
+        }
+    }
+
+    /**
+     * @param older The older mappings
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public static void diff(CSRGMappingFile older, CSRGMappingFile newer, Consumer<MappingChange> changes) {
+        try(Phase phase = Metrics.start("diff", "csrg")) {
+            boolean olderIndexed = older.size() <= newer.size();
+            Differ differ = new Differ(Collections.singletonList(null), csrgSide(olderIndexed ? older : newer), olderIndexed, changes);
+            differ.compare(csrgSide(olderIndexed ? newer : older));
+            differ.finish();
+            phase.setEntries(differ.entries);
+        }
+    }
+
+    /**
+     * Compares two tiny files, only the smaller one is loaded completely, the bigger one is read in batches.
+     * @param older The older mappings
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public static void diffTiny(File older, File newer, Consumer<MappingChange> changes) {
+        try(Phase phase = Metrics.start("diff", older.getName() + " " + newer.getName())) {
+            boolean olderIndexed = older.length() <= newer.length();
+            TinyMappingFile indexed = new TinyMappingFile();
+            indexed.loadFromFile(olderIndexed ? older : newer);
+
+            Differ[] differ = new Differ[1];
+            TinyMappingFile.loadBatches(olderIndexed ? newer : older, BATCH_SIZE, batch -> {
+                if(differ[0] == null) {
+                    // every batch has the namespaces of the file
+                    checkOriginalNamespaces(olderIndexed ? indexed : batch, olderIndexed ? batch : indexed);
+                    List<String> namespaces = olderIndexed
+                            ? namespaces(indexed.getNamespaceNames(), batch.getNamespaceNames())
+                            : namespaces(batch.getNamespaceNames(), indexed.getNamespaceNames());
+                    differ[0] = new Differ(namespaces, tinySide(indexed, namespaces), olderIndexed, changes);
+                }
+                differ[0].compare(tinySide(batch, differ[0].namespaces));
+            });
+            differ[0].finish();
+            phase.setEntries(differ[0].entries);
+        }
+    }
+
+    /**
+     * Compares two csrg files, only the smaller one is loaded completely, the bigger one is read in batches.
+     * @param older The older mappings
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public static void diffCSRG(File older, File newer, Consumer<MappingChange> changes) {
+        try(Phase phase = Metrics.start("diff", older.getName() + " " + newer.getName())) {
+            boolean olderIndexed = older.length() <= newer.length();
+            CSRGMappingFile indexed = new CSRGMappingFile();
+            indexed.loadFromFile(olderIndexed ? older : newer);
+
+            Differ differ = new Differ(Collections.singletonList(null), csrgSide(indexed), olderIndexed, changes);
+            CSRGMappingFile.loadBatches(olderIndexed ? newer : older, BATCH_SIZE, batch -> differ.compare(csrgSide(batch)));
+            differ.finish();
+            phase.setEntries(differ.entries);
+        }
+    }
+
+    private static void checkOriginalNamespaces(TinyMappingFile older, TinyMappingFile newer) {
+        if(!Objects.equals(older.getOriginalNamespaceName(), newer.getOriginalNamespaceName())) {
+            throw new IllegalArgumentException("Can't compare mappings with different original namespaces: "
+                    + older.getOriginalNamespaceName() + ", " + newer.getOriginalNamespaceName());
+        }
+    }
+
+    /**
+     * @return The namespaces of the older file, followed by the ones only the newer file has
+     */
+    private static List<String> namespaces(Collection<String> older, Collection<String> newer) {
+        Set<String> namespaces = new LinkedHashSet<>(older);
+        namespaces.addAll(newer);
+        return new ArrayList<>(namespaces);
+    }
+
+    private static Side tinySide(TinyMappingFile tiny, List<String> namespaces) {
+        // null for namespaces the file doesn't have
+        String[] columns = namespaces.stream()
+                .map(namespace -> tiny.getNamespaceNames().contains(namespace) ? namespace : null)
+                .toArray(String[]::new);
+        return new Side() {
+            @Override
+            public int size() {
+                return tiny.size();
+            }
+
+            @Override
+            public Mapping getOriginal(int row) {
+                return tiny.getOriginalMapping(row);
+            }
+
+            @Override
+            public String getName(int row, int namespace) {
+                return columns[namespace] == null ? null : tiny.getName(columns[namespace], row);
+            }
+
+            @Override
+            public int indexOf(Mapping original) {
+                return tiny.indexOf(original);
+            }
+        };
+    }
+
+    private static Side csrgSide(CSRGMappingFile csrg) {
+        return new Side() {
+            @Override
+            public int size() {
+                return csrg.size();
+            }
+
+            @Override
+            public Mapping getOriginal(int row) {
+                return csrg.getOriginalMapping(row);
+            }
+
+            @Override
+            public String getName(int row, int namespace) {
+                return csrg.getRemappedMapping(row).getName();
+            }
+
+            @Override
+            public int indexOf(Mapping original) {
+                return csrg.indexOf(original);
+            }
+        };
+    }
+
+    /**
+     * The entries of one of the compared files, by their position in it.
+     */
+    private interface Side {
+        int size();
+
+        Mapping getOriginal(int row);
+
+        /**
+         * @param namespace The position of the namespace in the namespaces of both files
+         * @return The name or null if the mapping isn't mapped in the namespace
+         */
+        String getName(int row, int namespace);
+
+        int indexOf(Mapping original);
+    }
+
+    private static class Differ {
+        private final List<String> namespaces;
+        private final Side indexed;
+        private final boolean olderIndexed;
+        private final Consumer<MappingChange> changes;
+        // the rows of the indexed file found in the other one
+        private final boolean[] matched;
+        private long entries;
+
+        private Differ(List<String> namespaces, Side indexed, boolean olderIndexed, Consumer<MappingChange> changes) {
+            this.namespaces = namespaces;
+            this.indexed = indexed;
+            this.olderIndexed = olderIndexed;
+            this.changes = changes;
+            this.matched = new boolean[indexed.size()];
+        }
+
+        /**
+         * Compares every entry of a part of the file that isn't indexed.
+         */
+        private void compare(Side probe) {
+            ExecutionContext context = ExecutionContext.current();
+            List<MappingChange> found = context.call(() -> context.stream(IntStream.range(0, probe.size()))
+                    .mapToObj(row -> {
+                        Mapping original = probe.getOriginal(row);
+                        int indexedRow = indexed.indexOf(original);
+                        if(indexedRow != -1) {
+                            matched[indexedRow] = true;
+                        }
+                        return olderIndexed
+                                ? compare(original, indexed, indexedRow, probe, row)
+                                : compare(original, probe, row, indexed, indexedRow);
+                    })
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList()));
+            found.forEach(changes);
+            entries += probe.size();
+        }
+
+        /**
+         * Reports the entries of the indexed file that weren't found in the other one.
+         */
+        private void finish() {
+            for(int row = 0; row < matched.length; row++) {
+                if(matched[row]) {
+                    continue;
+                }
+                Mapping original = indexed.getOriginal(row);
+                List<MappingChange> found = olderIndexed
+                        ? compare(original, indexed, row, null, -1)
+                        : compare(original, null, -1, indexed, row);
+                found.forEach(changes);
+                entries++;
+            }
+        }
+
+        /**
+         * @param olderRow The row in the older file, or -1 if it doesn't contain the mapping
+         * @param newerRow The row in the newer file, or -1 if it doesn't contain the mapping
+         */
+        private List<MappingChange> compare(Mapping original, Side older, int olderRow, Side newer, int newerRow) {
+            List<MappingChange> found = null;
+            for(int namespace = 0; namespace < namespaces.size(); namespace++) {
+                String oldName = olderRow == -1 ? null : older.getName(olderRow, namespace);
+                String newName = newerRow == -1 ? null : newer.getName(newerRow, namespace);
+                if(Objects.equals(oldName, newName)) {
+                    continue;
+                }
+                if(found == null) {
+                    found = new ArrayList<>(1);
+                }
+                found.add(new MappingChange(namespaces.get(namespace), original, oldName, newName));
+            }
+            return found == null ? Collections.emptyList() : found;
+        }
+    }
+}
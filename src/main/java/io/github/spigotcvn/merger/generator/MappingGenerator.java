@@ -0,0 +1,360 @@
+package io.github.spigotcvn.merger.generator;
+
+import io.github.spigotcvn.merger.mappings.files.Saveable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates made up tiny v1 mappings together with csrg mappings and package mappings that match them,
+ * for testing how the merger scales without real mapping files.
+ * <p>
+ * The same seed and settings always generate the same files. Classes are spread over a tree of packages,
+ * some of them are inner classes, and every class has fields and methods whose descriptors refer to other generated classes.
+ * The original namespace has short obfuscated names like a, b and aa, the intermediary namespace names like class_1
+ * and field_2, every other namespace readable names. The csrg mappings map the original namespace to spigot-like names
+ * and only contain part of the entries, the package mappings move the first packages into new ones.
+ * <p>
+ * Nothing is held in memory besides the class being written, so millions of entries can be generated.
+ */
+public class MappingGenerator {
+    private static final int AVERAGE_FIELDS = 4;
+    private static final int AVERAGE_METHODS = 6;
+    private static final int CLASSES_PER_PACKAGE = 40;
+    private static final int SUBPACKAGES = 4;
+    private static final double INNER_CLASS_RATIO = 0.15;
+    private static final String PRIMITIVES = "IZJDFBSC";
+    private static final String[] WORDS = {
+            "Block", "Entity", "World", "Item", "Level", "Chunk", "Render", "Sound", "Player", "Network",
+            "Data", "State", "Model", "Texture", "Biome", "Feature", "Config", "Packet", "Server", "Client",
+            "Inventory", "Recipe", "Particle", "Light", "Path", "Goal", "Effect", "Storage", "Task", "Value"
+    };
+
+    private final long seed;
+    private int entries = 100_000;
+    private int namespaces = 3;
+    private double csrgCoverage = 0.9;
+    private int packageRules = 8;
+
+    /**
+     * @param seed The seed all names, descriptors and ratios are chosen with
+     */
+    public MappingGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param entries About how many classes, fields and methods to generate in total, 100000 by default
+     */
+    public void setEntries(int entries) {
+        if(entries < 1) {
+            throw new IllegalArgumentException("Invalid amount of entries: " + entries);
+        }
+        this.entries = entries;
+    }
+
+    /**
+     * @param namespaces The amount of namespaces of the tiny mappings including the original one, at least 2, 3 by default
+     */
+    public void setNamespaces(int namespaces) {
+        if(namespaces < 2) {
+            throw new IllegalArgumentException("Invalid amount of namespaces: " + namespaces);
+        }
+        this.namespaces = namespaces;
+    }
+
+    /**
+     * @param csrgCoverage The part of the entries that are contained in the csrg mappings, between 0 and 1, 0.9 by default
+     */
+    public void setCsrgCoverage(double csrgCoverage) {
+        if(!(csrgCoverage >= 0 && csrgCoverage <= 1)) {
+            throw new IllegalArgumentException("Invalid csrg coverage: " + csrgCoverage);
+        }
+        this.csrgCoverage = csrgCoverage;
+    }
+
+    /**
+     * @param packageRules The amount of rules of the package mappings, 8 by default.
+     *                     There are never more rules than packages, the first rule always is ./
+     */
+    public void setPackageRules(int packageRules) {
+        if(packageRules < 0) {
+            throw new IllegalArgumentException("Invalid amount of package rules: " + packageRules);
+        }
+        this.packageRules = packageRules;
+    }
+
+    /**
+     * @return The names of the namespaces of the tiny mappings, the first one is the original namespace
+     */
+    public List<String> getNamespaceNames() {
+        List<String> names = new ArrayList<>();
+        for(int namespace = 0; namespace < namespaces; namespace++) {
+            names.add(namespaceName(namespace));
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @return The tiny mappings, generated again every time they are saved
+     */
+    public Saveable tiny() {
+        return os -> write(os, this::writeTiny);
+    }
+
+    /**
+     * @return The csrg mappings of the original namespace, generated again every time they are saved
+     */
+    public Saveable csrg() {
+        return os -> write(os, this::writeCSRG);
+    }
+
+    /**
+     * @return The package mappings, generated again every time they are saved
+     */
+    public Saveable packages() {
+        return os -> write(os, this::writePackages);
+    }
+
+    private void writeTiny(Writer writer) throws IOException {
+        writer.write("v1\t" + String.join("\t", getNamespaceNames()) + "\n");
+        int classes = classCount();
+        for(int clazz = 0; clazz < classes; clazz++) {
+            GeneratedClass generated = new GeneratedClass(clazz);
+            writer.write("CLASS");
+            for(int namespace = 0; namespace < namespaces; namespace++) {
+                writer.write('\t');
+                writer.write(className(clazz, namespace));
+            }
+            writer.write('\n');
+
+            String owner = className(clazz, 0);
+            for(int member = 0; member < generated.descriptors.length; member++) {
+                writer.write(generated.isField(member) ? "FIELD\t" : "METHOD\t");
+                writer.write(owner);
+                writer.write('\t');
+                writer.write(generated.descriptors[member]);
+                for(int namespace = 0; namespace < namespaces; namespace++) {
+                    writer.write('\t');
+                    writer.write(generated.memberName(member, namespace));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private void writeCSRG(Writer writer) throws IOException {
+        int classes = classCount();
+        for(int clazz = 0; clazz < classes; clazz++) {
+            GeneratedClass generated = new GeneratedClass(clazz);
+            String owner = className(clazz, 0);
+            if(generated.classCovered) {
+                writer.write(owner + " " + spigotClassName(clazz) + "\n");
+            }
+            for(int member = 0; member < generated.descriptors.length; member++) {
+                if(!generated.covered[member]) {
+                    continue;
+                }
+                writer.write(owner + " " + generated.memberName(member, 0) + " ");
+                if(!generated.isField(member)) {
+                    writer.write(generated.descriptors[member] + " ");
+                }
+                writer.write(generated.spigotMemberName(member) + "\n");
+            }
+        }
+    }
+
+    private void writePackages(Writer writer) throws IOException {
+        int rules = Math.min(packageRules, packageCount());
+        for(int pkg = 0; pkg < rules; pkg++) {
+            if(pkg == 0) {
+                writer.write("./ net/minecraft/server/\n");
+            } else {
+                writer.write(packageName(pkg, 0) + " org/bukkit/craftbukkit/libs/" + packageName(pkg, 0) + "\n");
+            }
+        }
+    }
+
+    private static void write(OutputStream os, Content content) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1024 * 1024);
+            content.write(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int classCount() {
+        return Math.max(1, entries / (1 + AVERAGE_FIELDS + AVERAGE_METHODS));
+    }
+
+    private int packageCount() {
+        return (classCount() + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE;
+    }
+
+    private static String namespaceName(int namespace) {
+        switch(namespace) {
+            case 0:
+                return "official";
+            case 1:
+                return "intermediary";
+            case 2:
+                return "named";
+            default:
+                return "named" + namespace;
+        }
+    }
+
+    /**
+     * The random numbers of a class, independent of all other classes, so every class can be generated on its own.
+     */
+    private SplittableRandom random(int clazz, int stream) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + clazz * 2L + stream);
+    }
+
+    /**
+     * @return Whether the class is an inner class of the class before it
+     */
+    private boolean isInner(int clazz) {
+        return clazz % CLASSES_PER_PACKAGE != 0 && random(clazz, 0).nextDouble() < INNER_CLASS_RATIO;
+    }
+
+    private String className(int clazz, int namespace) {
+        int local = clazz % CLASSES_PER_PACKAGE;
+        if(isInner(clazz)) {
+            String outer = className(clazz - 1, namespace);
+            switch(namespace) {
+                case 0:
+                    return outer + "$" + obfuscated(local);
+                case 1:
+                    return outer + "$class_" + clazz;
+                default:
+                    return outer + "$" + word(clazz + namespace) + local;
+            }
+        }
+        switch(namespace) {
+            case 0:
+                return packageName(clazz / CLASSES_PER_PACKAGE, 0) + obfuscated(local);
+            case 1:
+                return "net/minecraft/class_" + clazz;
+            default:
+                return packageName(clazz / CLASSES_PER_PACKAGE, namespace) + word(clazz + namespace) + word(clazz / WORDS.length) + clazz;
+        }
+    }
+
+    private String spigotClassName(int clazz) {
+        if(isInner(clazz)) {
+            return spigotClassName(clazz - 1) + "$" + word(clazz) + clazz % CLASSES_PER_PACKAGE;
+        }
+        return "net/minecraft/server/" + word(clazz) + word(clazz / WORDS.length + 1) + clazz;
+    }
+
+    /**
+     * @return The name of the package with a / at the end, an empty string for the package without a name
+     */
+    private String packageName(int pkg, int namespace) {
+        if(namespace != 0) {
+            return pkg == 0 ? "net/minecraft/" : packageName((pkg - 1) / SUBPACKAGES, namespace) + word(pkg + namespace).toLowerCase() + "/";
+        }
+        return pkg == 0 ? "" : packageName((pkg - 1) / SUBPACKAGES, 0) + obfuscated(pkg) + "/";
+    }
+
+    private static String word(int index) {
+        return WORDS[index % WORDS.length];
+    }
+
+    /**
+     * @return The index written in base 26 with the letters a to z, like obfuscators name classes and members
+     */
+    private static String obfuscated(int index) {
+        StringBuilder builder = new StringBuilder();
+        int remaining = index;
+        do {
+            builder.append((char) ('a' + remaining % 26));
+            remaining = remaining / 26 - 1;
+        } while(remaining >= 0);
+        return builder.reverse().toString();
+    }
+
+    /**
+     * The fields and methods of a class, fields come first.
+     */
+    private class GeneratedClass {
+        private final int clazz;
+        private final int fields;
+        private final String[] descriptors;
+        private final boolean classCovered;
+        private final boolean[] covered;
+
+        private GeneratedClass(int clazz) {
+            this.clazz = clazz;
+            SplittableRandom random = random(clazz, 1);
+            fields = random.nextInt(AVERAGE_FIELDS * 2 + 1);
+            int methods = random.nextInt(AVERAGE_METHODS * 2 + 1);
+            classCovered = random.nextDouble() < csrgCoverage;
+
+            descriptors = new String[fields + methods];
+            covered = new boolean[fields + methods];
+            for(int member = 0; member < descriptors.length; member++) {
+                if(member < fields) {
+                    descriptors[member] = type(random);
+                } else {
+                    StringBuilder descriptor = new StringBuilder("(");
+                    int parameters = random.nextInt(4);
+                    for(int parameter = 0; parameter < parameters; parameter++) {
+                        descriptor.append(type(random));
+                    }
+                    descriptor.append(')').append(random.nextInt(3) == 0 ? "V" : type(random));
+                    descriptors[member] = descriptor.toString();
+                }
+                covered[member] = random.nextDouble() < csrgCoverage;
+            }
+        }
+
+        private boolean isField(int member) {
+            return member < fields;
+        }
+
+        private String memberName(int member, int namespace) {
+            int index = isField(member) ? member : member - fields;
+            switch(namespace) {
+                case 0:
+                    return obfuscated(index);
+                case 1:
+                    // unique over all classes, like intermediary names are
+                    return (isField(member) ? "field_" : "method_") + (clazz * 32L + member);
+                default:
+                    String prefix = isField(member) ? word(clazz + member).toLowerCase() : "get";
+                    return prefix + word(clazz + member + namespace) + index;
+            }
+        }
+
+        private String spigotMemberName(int member) {
+            return (isField(member) ? word(clazz + member).toLowerCase() : "do") + word(clazz + member + 1) + member;
+        }
+
+        private String type(SplittableRandom random) {
+            int kind = random.nextInt(20);
+            if(kind < 8) {
+                return String.valueOf(PRIMITIVES.charAt(random.nextInt(PRIMITIVES.length())));
+            }
+            if(kind < 17) {
+                return "L" + className(random.nextInt(classCount()), 0) + ";";
+            }
+            if(kind < 19) {
+                return "Ljava/lang/String;";
+            }
+            return "[" + type(random);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Content {
+        void write(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.spigotcvn.merger.mappings;
+
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores every distinct name (class names, member names and descriptors) only once.
+ * Mapping files pass every name they store through their symbol table, so equal names
+ * loaded or created in different places end up being the same instance.
+ * <p>
+ * Implementations have to be safe to use from multiple threads.
+ */
+@FunctionalInterface
+public interface SymbolTable {
+    /**
+     * A symbol table that doesn't intern anything.
+     */
+    SymbolTable NONE = name -> name;
+
+    /**
+     * @param name The name to intern, may be null
+     * @return The stored instance of the name, or the name itself if it wasn't stored yet
+     */
+    String intern(String name);
+
+    /**
+     * Interns all parts of a mapping.
+     * @param mapping The mapping to intern
+     * @return The mapping itself if all of its parts were already interned, otherwise a new mapping with interned parts
+     */
+    default Mapping intern(Mapping mapping) {
+        String name = intern(mapping.getName());
+        String className = intern(mapping.getClassName());
+        String descriptor = intern(mapping.getDescriptor());
+        if(name == mapping.getName() && className == mapping.getClassName() && descriptor == mapping.getDescriptor()) {
+            return mapping;
+        }
+        return new Mapping(mapping.getType(), name, className, descriptor);
+    }
+
+    /**
+     * Creates a new, empty symbol table which keeps every name it interned.
+     * @return The symbol table
+     */
+    static SymbolTable create() {
+        Map<String, String> names = new ConcurrentHashMap<>();
+        return name -> {
+            if(name == null) {
+                return null;
+            }
+            String interned = names.get(name);
+            if(interned == null) {
+                interned = names.putIfAbsent(name, name);
+            }
+            return interned == null ? name : interned;
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.util.CompressedFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public interface BufferLoadable extends Loadable {
+    /**
+     * Files up to this size are copied to the heap instead of being mapped
+     */
+    int MAX_COPIED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Loads the class directly from bytes in memory
+     * The buffer may be a mapped file, so it must not be referenced anymore once loading is done
+     * @param buffer The buffer to load from, from its position to its limit
+     * @throws InvalidMappingFormatException If the buffer doesn't contain valid mappings
+     */
+    void loadFromBuffer(ByteBuffer buffer) throws InvalidMappingFormatException;
+
+    /**
+     * Loads the class from a file by reading it into memory at once, instead of reading it through a stream
+     * Files up to {@link #MAX_COPIED_SIZE} are copied to the heap, bigger ones are memory mapped.
+     * A mapping can't be released explicitly, it stays open until the buffer is garbage collected,
+     * and on Windows the file can't be deleted or replaced until then.
+     * Compressed files and files that are too big to be mapped at once are read through {@link #loadFromStream(java.io.InputStream)}
+     * @see #loadFromBuffer(ByteBuffer)
+     * @param file The file to load from
+     */
+    @Override
+    default void loadFromFile(File file) {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE || CompressedFiles.isCompressed(file)) {
+                Loadable.super.loadFromFile(file);
+                return;
+            }
+            if(size > MAX_COPIED_SIZE) {
+                loadFromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while(buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the whole file is in the buffer
+            }
+            buffer.flip();
+            loadFromBuffer(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a range of a byte buffer into lines and the lines into fields, without decoding them first.
+ * <p>
+ * Fields are split the same way {@link String#split(String)} splits them, so trailing empty fields are dropped.
+ * Strings are only created for the fields that are read through {@link #field(int)}, and as mapping files
+ * repeat the same names a lot, recently decoded names are remembered and reused without decoding them again.
+ * <p>
+ * Not safe to use from multiple threads, use one tokenizer per thread instead.
+ */
+class ByteLineTokenizer {
+    private static final int CACHE_SIZE = 1 << 14;
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final byte separator;
+    private final SymbolTable symbolTable;
+    private final Charset charset = Charset.defaultCharset();
+
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+
+    private byte[] scratch = new byte[256];
+    private final String[] cache = new String[CACHE_SIZE];
+
+    /**
+     * @param buffer The buffer to read, it is only read using absolute positions
+     * @param start The index of the first byte to read
+     * @param end The index after the last byte to read
+     * @param separator The character fields are separated by
+     * @param symbolTable The symbol table decoded names are interned with
+     */
+    ByteLineTokenizer(ByteBuffer buffer, int start, int end, char separator, SymbolTable symbolTable) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+        this.separator = (byte) separator;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Splits a range of a buffer into chunks of about the same size that only contain whole lines.
+     * @param buffer The buffer
+     * @param start The index of the first byte of the range
+     * @param end The index after the last byte of the range
+     * @param chunks The amount of chunks to split the range into
+     * @return The boundaries of the chunks, chunk i goes from index i until index i + 1
+     */
+    static int[] chunkBounds(ByteBuffer buffer, int start, int end, int chunks) {
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        for(int i = 1; i < chunks; i++) {
+            int bound = Math.max(bounds[i - 1], (int) (start + (long) (end - start) * i / chunks));
+            while(bound < end && bound > start && buffer.get(bound - 1) != '\n') {
+                bound++;
+            }
+            bounds[i] = bound;
+        }
+        bounds[chunks] = end;
+        return bounds;
+    }
+
+    /**
+     * @return The index of the first byte of the next line
+     */
+    int position() {
+        return Math.min(position, end);
+    }
+
+    /**
+     * Moves to the next line and splits it into fields.
+     * @return False if there are no more lines
+     */
+    boolean nextLine() {
+        if(position >= end) {
+            return false;
+        }
+
+        lineStart = position;
+        int i = position;
+        while(i < end && buffer.get(i) != '\n') {
+            i++;
+        }
+        position = i + 1;
+        lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+
+        split();
+        return true;
+    }
+
+    /**
+     * @return The amount of fields in the current line
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return Whether the current line starts with the given character
+     */
+    boolean startsWith(char c) {
+        return lineEnd > lineStart && buffer.get(lineStart) == c;
+    }
+
+    /**
+     * Compares a field to an ASCII string without decoding the field.
+     * @param index The index of the field
+     * @param value The string to compare to
+     * @return Whether the field is equal to the string
+     */
+    boolean fieldEquals(int index, String value) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        if(length != value.length()) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(buffer.get(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a field of the current line and interns it.
+     * @param index The index of the field
+     * @return The field
+     */
+    String field(int index) {
+        return decode(fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Decodes the whole current line, without interning it.
+     * @return The line
+     */
+    String line() {
+        int length = lineEnd - lineStart;
+        return new String(copy(lineStart, length), 0, length, charset);
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int fieldStart = lineStart;
+        for(int i = lineStart; i < lineEnd; i++) {
+            if(buffer.get(i) == separator) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        if(fieldCount == 0) {
+            // like String#split, a line without a separator is a single field even if it's empty
+            addField(fieldStart, lineEnd);
+            return;
+        }
+        addField(fieldStart, lineEnd);
+        while(fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    private void addField(int start, int end) {
+        if(fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        boolean ascii = true;
+        for(int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            ascii &= b >= 0;
+            hash = 31 * hash + b;
+        }
+        if(!ascii) {
+            return symbolTable.intern(new String(copy(start, length), 0, length, charset));
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        String cached = cache[slot];
+        if(cached != null && matches(cached, start, length)) {
+            return cached;
+        }
+
+        String decoded = symbolTable.intern(new String(copy(start, length), 0, length, StandardCharsets.ISO_8859_1));
+        cache[slot] = decoded;
+        return decoded;
+    }
+
+    private boolean matches(String cached, int start, int length) {
+        if(cached.length() != length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(cached.charAt(i) != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] copy(int start, int length) {
+        if(scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for(int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return scratch;
+    }
+}
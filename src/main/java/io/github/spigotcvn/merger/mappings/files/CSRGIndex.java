@@ -0,0 +1,231 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.storage.SlotIndex;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.util.*;
+
+/**
+ * Secondary indexes over the entries of a {@link CSRGMappingFile}: original mapping to entry id, remapped to original mapping,
+ * original mapping by type, class name and name with or without the descriptor, and class name to the members of that class.
+ * <p>
+ * The indexes are {@link SlotIndex}es over the entry ids, the keys are read from the entries themselves,
+ * so lookups don't allocate anything. If multiple entries have the same key, the first one is indexed.
+ * The index is a snapshot of the entries at the time it was built, it isn't updated when the file changes.
+ */
+final class CSRGIndex {
+    private final Mapping[] from;
+    private final Mapping[] to;
+
+    private final MappingIndex originalIndex;
+    private final MappingIndex reverseIndex;
+    private final MemberIndex memberIndex;
+    // indexes the groups, members of group g are members[groupStarts[g]] until members[groupStarts[g + 1]]
+    private final SlotIndex<String> classIndex;
+    private final List<String> groupClasses = new ArrayList<>();
+    private final int[] groupStarts;
+    private final Mapping[] members;
+
+    CSRGIndex(Map<Mapping, Mapping> entries) {
+        int size = entries.size();
+        from = new Mapping[size];
+        to = new Mapping[size];
+        int i = 0;
+        for(Map.Entry<Mapping, Mapping> entry : entries.entrySet()) {
+            from[i] = entry.getKey();
+            to[i] = entry.getValue();
+            i++;
+        }
+
+        originalIndex = new MappingIndex(from, size);
+        reverseIndex = new MappingIndex(to, size);
+        memberIndex = new MemberIndex(size);
+        classIndex = new SlotIndex<String>(size) {
+            @Override
+            protected int hashRow(int group) {
+                return groupClasses.get(group).hashCode();
+            }
+
+            @Override
+            protected boolean matches(int group, String className) {
+                return groupClasses.get(group).equals(className);
+            }
+
+            @Override
+            protected boolean sameKey(int group, int otherGroup) {
+                return groupClasses.get(group).equals(groupClasses.get(otherGroup));
+            }
+        };
+        int[] groups = new int[size];
+
+        for(int entry = 0; entry < size; entry++) {
+            originalIndex.insert(entry);
+            reverseIndex.insert(entry);
+            String className = from[entry].getClassName();
+            if(className == null) {
+                groups[entry] = -1;
+                continue;
+            }
+            memberIndex.insert(entry);
+            groupClasses.add(className);
+            groups[entry] = classIndex.insert(groupClasses.size() - 1);
+            if(groups[entry] != groupClasses.size() - 1) {
+                // the class already has a group
+                groupClasses.remove(groupClasses.size() - 1);
+            }
+        }
+
+        int groupCount = groupClasses.size();
+        groupStarts = new int[groupCount + 1];
+        for(int group : groups) {
+            if(group != -1) {
+                groupStarts[group + 1]++;
+            }
+        }
+        for(int group = 0; group < groupCount; group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+        int[] next = Arrays.copyOf(groupStarts, groupCount);
+        members = new Mapping[groupStarts[groupCount]];
+        for(int entry = 0; entry < size; entry++) {
+            if(groups[entry] != -1) {
+                members[next[groups[entry]]++] = from[entry];
+            }
+        }
+    }
+
+    int size() {
+        return from.length;
+    }
+
+    Mapping getFrom(int entry) {
+        return from[entry];
+    }
+
+    Mapping getTo(int entry) {
+        return to[entry];
+    }
+
+    /**
+     * @param original The original mapping
+     * @return The id of the entry with the original mapping, or -1 if there is none
+     */
+    int indexOf(Mapping original) {
+        return originalIndex.find(original);
+    }
+
+    /**
+     * @param remapped The remapped mapping
+     * @return The original mapping of the first entry with the remapped mapping, or null if there is none
+     */
+    Mapping findOriginal(Mapping remapped) {
+        int entry = reverseIndex.find(remapped);
+        return entry == -1 ? null : from[entry];
+    }
+
+    /**
+     * @return The remapped mapping of the entry whose original mapping has exactly the given parts, or null if there is none
+     */
+    Mapping findRemapped(Mapping.Type type, String name, String className, String descriptor) {
+        int entry = originalIndex.find(type, name, className, descriptor);
+        return entry == -1 ? null : to[entry];
+    }
+
+    /**
+     * @return The remapped mapping of the first entry whose original mapping has the given type, name and class name, or null if there is none
+     */
+    Mapping findRemapped(Mapping.Type type, String name, String className) {
+        int entry = memberIndex.find(type, name, className);
+        return entry == -1 ? null : to[entry];
+    }
+
+    /**
+     * @return The original mappings of all fields and methods of the class, in the order they were added in
+     */
+    List<Mapping> getMembers(String className) {
+        int group = classIndex.find(className);
+        if(group == -1) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(members).subList(groupStarts[group], groupStarts[group + 1]));
+    }
+
+    /**
+     * Indexes the entries by the mappings on one side.
+     */
+    private static class MappingIndex extends SlotIndex<Mapping> {
+        private final Mapping[] mappings;
+
+        private MappingIndex(Mapping[] mappings, int size) {
+            super(size);
+            this.mappings = mappings;
+        }
+
+        int find(Mapping.Type type, String name, String className, String descriptor) {
+            for(int i = firstSlot(Mapping.hash(type, name, className, descriptor)); ; i = nextSlot(i)) {
+                int entry = rowAt(i);
+                if(entry == -1 || sameMember(mappings[entry], type, name, className)
+                        && Objects.equals(mappings[entry].getDescriptor(), descriptor)) {
+                    return entry;
+                }
+            }
+        }
+
+        @Override
+        protected int hashRow(int entry) {
+            return mappings[entry].hashCode();
+        }
+
+        @Override
+        protected boolean matches(int entry, Mapping key) {
+            return mappings[entry].equals(key);
+        }
+
+        @Override
+        protected boolean sameKey(int entry, int otherEntry) {
+            return mappings[entry].equals(mappings[otherEntry]);
+        }
+    }
+
+    /**
+     * Indexes the entries by the type, name and class name of the original mapping.
+     */
+    private class MemberIndex extends SlotIndex<Mapping> {
+        private MemberIndex(int size) {
+            super(size);
+        }
+
+        int find(Mapping.Type type, String name, String className) {
+            for(int i = firstSlot(Mapping.hash(type, name, className, null)); ; i = nextSlot(i)) {
+                int entry = rowAt(i);
+                if(entry == -1 || sameMember(from[entry], type, name, className)) {
+                    return entry;
+                }
+            }
+        }
+
+        @Override
+        protected int hashRow(int entry) {
+            return hashKey(from[entry]);
+        }
+
+        @Override
+        protected int hashKey(Mapping key) {
+            return Mapping.hash(key.getType(), key.getName(), key.getClassName(), null);
+        }
+
+        @Override
+        protected boolean matches(int entry, Mapping key) {
+            return sameMember(from[entry], key.getType(), key.getName(), key.getClassName());
+        }
+
+        @Override
+        protected boolean sameKey(int entry, int otherEntry) {
+            return matches(entry, from[otherEntry]);
+        }
+    }
+
+    private static boolean sameMember(Mapping mapping, Mapping.Type type, String name, String className) {
+        return mapping.getType() == type && mapping.getName().equals(name) && Objects.equals(mapping.getClassName(), className);
+    }
+}
@@ -1,19 +1,35 @@
 package io.github.spigotcvn.merger.mappings.files;
 
+import io.github.spigotcvn.merger.diff.MappingChange;
+import io.github.spigotcvn.merger.diff.MappingDiff;
 import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
 import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.util.ExecutionContext;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CSRGMappingFile implements BufferLoadable, Saveable, Iterable<Map.Entry<Mapping, Mapping>> {
+    // buffers smaller than this are not split into multiple chunks
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
 
-public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<Mapping, Mapping>> {
     private final Map<Mapping, Mapping> orig2remap = new LinkedHashMap<>();
+    private SymbolTable symbolTable = SymbolTable.create();
+    // secondary indexes, only built once they are used and thrown away when the mappings change
+    private volatile CSRGIndex index;
 
     public void addMapping(Mapping from, Mapping to) {
-        orig2remap.put(from, to);
+        orig2remap.put(symbolTable.intern(from), symbolTable.intern(to));
+        index = null;
     }
 
     public Mapping getRemapped(Mapping from) {
@@ -29,12 +45,81 @@ public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<M
             throw new IllegalArgumentException("Mapping cannot be null");
         }
 
-        for(Map.Entry<Mapping, Mapping> entry : orig2remap.entrySet()) {
-            if(entry.getValue().equals(to)) {
-                return entry.getKey();
-            }
+        return index().findOriginal(to);
+    }
+
+    /**
+     * Looks up the remapped form of a mapping by its parts, like {@link #getRemapped(Mapping)} but without creating a mapping first.
+     * @param type The type of the original mapping
+     * @param name The name of the original mapping
+     * @param className The class name of the original mapping
+     * @param descriptor The descriptor of the original mapping
+     * @return The remapped mapping, or null if there is none
+     */
+    public Mapping getRemapped(Mapping.Type type, String name, String className, String descriptor) {
+        if(type == null || name == null) {
+            throw new IllegalArgumentException("Type and name cannot be null");
+        }
+
+        return index().findRemapped(type, name, className, descriptor);
+    }
+
+    /**
+     * Looks up the remapped form of a mapping by its type, name and class name, ignoring its descriptor.
+     * If multiple mappings only differ in their descriptor, the one that was added first is used.
+     * @param type The type of the original mapping
+     * @param name The name of the original mapping
+     * @param className The class name of the original mapping
+     * @return The remapped mapping, or null if there is none
+     */
+    public Mapping getRemapped(Mapping.Type type, String name, String className) {
+        if(type == null || name == null) {
+            throw new IllegalArgumentException("Type and name cannot be null");
+        }
+
+        return index().findRemapped(type, name, className);
+    }
+
+    /**
+     * @param className The name of the class
+     * @return The original mappings of all fields and methods of the class, in the order they were added in
+     */
+    public List<Mapping> getMembers(String className) {
+        if(className == null) {
+            throw new IllegalArgumentException("Class name cannot be null");
+        }
+
+        return index().getMembers(className);
+    }
+
+    /**
+     * Gets an original mapping by its position, the mappings are in the order they were added in.
+     * @param index The position of the mapping, from 0 until {@link #size()}
+     * @return The original mapping
+     */
+    public Mapping getOriginalMapping(int index) {
+        return index().getFrom(checkIndex(index));
+    }
+
+    /**
+     * Gets a remapped mapping by the position of its original mapping.
+     * @param index The position of the mapping, from 0 until {@link #size()}
+     * @return The remapped mapping
+     */
+    public Mapping getRemappedMapping(int index) {
+        return index().getTo(checkIndex(index));
+    }
+
+    /**
+     * @param original The original mapping
+     * @return The position of the original mapping, or -1 if the file doesn't contain it
+     */
+    public int indexOf(Mapping original) {
+        if(original == null) {
+            throw new IllegalArgumentException("Mapping cannot be null");
         }
-        return null;
+
+        return index().indexOf(original);
     }
 
     public List<Mapping> getOriginalMappings() {
@@ -49,8 +134,88 @@ public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<M
         return remapped;
     }
 
+    /**
+     * @return The amount of mappings
+     */
+    public int size() {
+        return orig2remap.size();
+    }
+
+    /**
+     * Copies the mappings, the copy uses the same symbol table and keeps the indexes built so far.
+     * @return A copy of these mappings that can be changed without changing these ones
+     */
+    public CSRGMappingFile copy() {
+        CSRGMappingFile copy = new CSRGMappingFile();
+        copy.symbolTable = symbolTable;
+        copy.orig2remap.putAll(orig2remap);
+        copy.index = index;
+        return copy;
+    }
+
+    /**
+     * Compares these mappings with newer ones, see {@link MappingDiff}.
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public void diff(CSRGMappingFile newer, Consumer<MappingChange> changes) {
+        MappingDiff.diff(this, newer, changes);
+    }
+
+    /**
+     * Loads a csrg file in batches of whole lines, every batch is loaded as a file of its own.
+     * Only one batch is held in memory at a time, so files can be processed without loading all of them.
+     * Snapshots are loaded as a single batch.
+     * @param file The file to load
+     * @param batchSize The approximate size of a batch in bytes
+     * @param action Called with every batch, in the order they are in the file, and at least once
+     */
+    public static void loadBatches(File file, int batchSize, Consumer<CSRGMappingFile> action) {
+        LineBatches.read(file, batchSize, false, buffer -> {
+            CSRGMappingFile batch = new CSRGMappingFile();
+            try {
+                batch.loadFromBuffer(buffer);
+            } catch (InvalidMappingFormatException e) {
+                throw new UncheckedIOException(e);
+            }
+            action.accept(batch);
+        });
+    }
+
+    /**
+     * @return The symbol table all names stored in this file go through
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Sets the symbol table that names added from now on will go through.
+     * Share one symbol table between multiple files to store names they have in common only once.
+     * @param symbolTable The symbol table
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        if(symbolTable == null) {
+            throw new IllegalArgumentException("Symbol table cannot be null");
+        }
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
     public void loadFromStream(InputStream is) throws InvalidMappingFormatException {
-        try(BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+        try(Phase phase = Metrics.start("csrg.load")) {
+            readStream(is);
+            phase.setEntries(orig2remap.size());
+        }
+    }
+
+    private void readStream(InputStream is) throws InvalidMappingFormatException {
+        try(BufferedInputStream buffered = new BufferedInputStream(is)) {
+            if(SnapshotFormat.isSnapshot(buffered)) {
+                new CSRGMappingSnapshot(this).loadFromStream(buffered);
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(buffered));
             String line;
             while ((line = reader.readLine()) != null) {
                 if (line.startsWith("#")) {
@@ -60,6 +225,9 @@ public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<M
                 if (parts.length < 2) {
                     throw new InvalidMappingFormatException("Invalid line: " + line);
                 }
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = symbolTable.intern(parts[i]);
+                }
                 if(parts.length == 2) {
                     // this is a class mapping
                     Mapping from = new Mapping(Mapping.Type.CLASS, parts[0], null, null);
@@ -79,12 +247,102 @@ public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<M
                     throw new InvalidMappingFormatException("Invalid line: " + line);
                 }
             }
+        } catch (InvalidMappingFormatException e) {
+            throw e;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Loads the mappings directly from the bytes of a csrg file.
+     * Big buffers are split into chunks of whole lines that are parsed in parallel,
+     * the mappings are added in the same order as they are in the buffer.
+     * Buffers containing a {@link CSRGMappingSnapshot} are loaded as snapshot.
+     * @param buffer The buffer to load from, from its position to its limit
+     * @throws InvalidMappingFormatException If the buffer doesn't contain a valid csrg file
+     */
+    @Override
+    public void loadFromBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        try(Phase phase = Metrics.start("csrg.load")) {
+            readBuffer(buffer);
+            phase.setEntries(orig2remap.size());
+        }
+    }
+
+    private void readBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        if(SnapshotFormat.isSnapshot(buffer)) {
+            new CSRGMappingSnapshot(this).loadFromBuffer(buffer);
+            return;
+        }
+        int start = buffer.position();
+        ExecutionContext context = ExecutionContext.current();
+        int chunks = (int) Math.max(1, Math.min(
+                (buffer.limit() - start) / MIN_CHUNK_SIZE,
+                context.getParallelism() * 4L
+        ));
+        int[] bounds = ByteLineTokenizer.chunkBounds(buffer, start, buffer.limit(), chunks);
+
+        List<List<Mapping>> parsed;
+        try {
+            parsed = context.call(() -> context.stream(IntStream.range(0, chunks))
+                    .mapToObj(chunk -> parseMappings(buffer, bounds[chunk], bounds[chunk + 1]))
+                    .collect(Collectors.toList()));
+        } catch (UncheckedIOException e) {
+            throw (InvalidMappingFormatException) e.getCause();
+        }
+
+        // the parsed mappings are interned already
+        for(List<Mapping> mappings : parsed) {
+            for(int i = 0; i < mappings.size(); i += 2) {
+                orig2remap.put(mappings.get(i), mappings.get(i + 1));
+            }
+        }
+        index = null;
+    }
+
+    /**
+     * @return The parsed mappings, every original mapping is followed by its remapped form
+     */
+    private List<Mapping> parseMappings(ByteBuffer buffer, int start, int end) {
+        ByteLineTokenizer tokenizer = new ByteLineTokenizer(buffer, start, end, ' ', symbolTable);
+        List<Mapping> mappings = new ArrayList<>();
+        while(tokenizer.nextLine()) {
+            if(tokenizer.startsWith('#')) {
+                continue;
+            }
+            int parts = tokenizer.fieldCount();
+            if(parts == 2) {
+                // this is a class mapping
+                mappings.add(new Mapping(Mapping.Type.CLASS, tokenizer.field(0), null, null));
+                mappings.add(new Mapping(Mapping.Type.CLASS, tokenizer.field(1), null, null));
+            } else if(parts == 3) {
+                // this is a field mapping
+                String className = tokenizer.field(0);
+                mappings.add(new Mapping(Mapping.Type.FIELD, tokenizer.field(1), className, null));
+                mappings.add(new Mapping(Mapping.Type.FIELD, tokenizer.field(2), className, null));
+            } else if(parts == 4) {
+                // this is a method mapping
+                String className = tokenizer.field(0);
+                String descriptor = tokenizer.field(2);
+                mappings.add(new Mapping(Mapping.Type.METHOD, tokenizer.field(1), className, descriptor));
+                mappings.add(new Mapping(Mapping.Type.METHOD, tokenizer.field(3), className, descriptor));
+            } else {
+                throw new UncheckedIOException(new InvalidMappingFormatException("Invalid line: " + tokenizer.line()));
+            }
+        }
+        return mappings;
+    }
+
+    @Override
     public void saveToStream(OutputStream os) {
+        try(Phase phase = Metrics.start("csrg.save")) {
+            writeStream(os);
+            phase.setEntries(orig2remap.size());
+        }
+    }
+
+    private void writeStream(OutputStream os) {
         try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os))) {
 
             orig2remap.forEach((from, to) -> {
@@ -120,7 +378,27 @@ public class CSRGMappingFile implements Loadable, Saveable, Iterable<Map.Entry<M
     @NotNull
     @Override
     public Iterator<Map.Entry<Mapping, Mapping>> iterator() {
-        return orig2remap.entrySet().iterator();
+        return Collections.unmodifiableMap(orig2remap).entrySet().iterator();
+    }
+
+    private int checkIndex(int index) {
+        if(index < 0 || index >= orig2remap.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + orig2remap.size());
+        }
+        return index;
+    }
+
+    private CSRGIndex index() {
+        CSRGIndex current = index;
+        if(current != null) {
+            return current;
+        }
+        synchronized(this) {
+            if(index == null) {
+                index = new CSRGIndex(orig2remap);
+            }
+            return index;
+        }
     }
 
     public void forEach(BiConsumer<Mapping, Mapping> action) {
@@ -0,0 +1,120 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Saves and loads a {@link CSRGMappingFile} in a binary format that can be loaded without parsing any text.
+ * <p>
+ * After the shared header and string pool (see {@link SnapshotFormat}) follow all entries, each stored as
+ * the type of the mapping and the ids of the name, class name and descriptor of the original and the remapped mapping.
+ * Unlike the text format, the class name and descriptor of remapped mappings are kept.
+ */
+public class CSRGMappingSnapshot implements BufferLoadable, Saveable {
+    private final CSRGMappingFile mappings;
+
+    public CSRGMappingSnapshot() {
+        this(new CSRGMappingFile());
+    }
+
+    /**
+     * @param mappings The mappings that will be saved, or loaded into
+     */
+    public CSRGMappingSnapshot(CSRGMappingFile mappings) {
+        if(mappings == null) {
+            throw new IllegalArgumentException("Mappings cannot be null");
+        }
+        this.mappings = mappings;
+    }
+
+    public CSRGMappingFile getMappings() {
+        return mappings;
+    }
+
+    @Override
+    public void loadFromStream(InputStream is) throws IOException {
+        loadFromBuffer(SnapshotFormat.readFully(is));
+    }
+
+    @Override
+    public void loadFromBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        try {
+            load(buffer.duplicate());
+        } catch(BufferUnderflowException e) {
+            throw new InvalidMappingFormatException("Snapshot is truncated");
+        }
+    }
+
+    private void load(ByteBuffer buffer) throws InvalidMappingFormatException {
+        SnapshotFormat.readHeader(buffer, SnapshotFormat.KIND_CSRG);
+        int stringCount = buffer.getInt();
+        int entries = buffer.getInt();
+        if(entries < 0) {
+            throw new InvalidMappingFormatException("Invalid snapshot header");
+        }
+        String[] pool = SnapshotFormat.readPool(buffer, stringCount, mappings.getSymbolTable());
+
+        for(int i = 0; i < entries; i++) {
+            Mapping.Type type = SnapshotFormat.type(buffer.get());
+            Mapping from = readMapping(buffer, pool, type, i);
+            Mapping to = readMapping(buffer, pool, type, i);
+            mappings.addMapping(from, to);
+        }
+    }
+
+    private static Mapping readMapping(ByteBuffer buffer, String[] pool, Mapping.Type type, int entry) throws InvalidMappingFormatException {
+        String name = SnapshotFormat.string(pool, buffer.getInt());
+        String className = SnapshotFormat.string(pool, buffer.getInt());
+        String descriptor = SnapshotFormat.string(pool, buffer.getInt());
+        if(name == null) {
+            throw new InvalidMappingFormatException("Mapping without a name in entry " + entry);
+        }
+        return new Mapping(type, name, className, descriptor);
+    }
+
+    @Override
+    public void saveToStream(OutputStream os) {
+        SnapshotFormat.PoolBuilder pool = new SnapshotFormat.PoolBuilder();
+        int[] entries = new int[1];
+        mappings.forEach((from, to) -> {
+            if(from == null || to == null) {
+                throw new IllegalStateException("Missing mapping");
+            }
+            addToPool(pool, from);
+            addToPool(pool, to);
+            entries[0]++;
+        });
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1024 * 1024))) {
+            SnapshotFormat.writeHeader(out, SnapshotFormat.KIND_CSRG);
+            out.writeInt(pool.size());
+            out.writeInt(entries[0]);
+            pool.write(out);
+
+            for(Map.Entry<Mapping, Mapping> entry : mappings) {
+                out.writeByte(entry.getKey().getType().ordinal());
+                writeMapping(out, pool, entry.getKey());
+                writeMapping(out, pool, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to save snapshot", e);
+        }
+    }
+
+    private static void addToPool(SnapshotFormat.PoolBuilder pool, Mapping mapping) {
+        pool.add(mapping.getName());
+        pool.add(mapping.getClassName());
+        pool.add(mapping.getDescriptor());
+    }
+
+    private static void writeMapping(DataOutputStream out, SnapshotFormat.PoolBuilder pool, Mapping mapping) throws IOException {
+        out.writeInt(pool.id(mapping.getName()));
+        out.writeInt(pool.id(mapping.getClassName()));
+        out.writeInt(pool.id(mapping.getDescriptor()));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.util.CompressedFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads a text mapping file in batches of whole lines, so files can be processed without holding all of them in memory.
+ * <p>
+ * Every batch can start with the header of the file, so every batch can be loaded like a file of its own.
+ * The buffer of a batch is reused for the next one, it must not be used after the batch was handled.
+ */
+final class LineBatches {
+    private LineBatches() {
+    }
+
+    /**
+     * @param file The file to read, snapshots are read as a single batch
+     * @param batchSize The size of a batch in bytes, lines longer than that make the batch bigger
+     * @param header Whether the first line that isn't a comment is the header of the file, which every batch starts with
+     * @param action Called with every batch, in the order they are in the file, and at least once
+     */
+    static void read(File file, int batchSize, boolean header, Consumer<ByteBuffer> action) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+
+        try(InputStream is = new BufferedInputStream(CompressedFiles.openInput(file))) {
+            if(SnapshotFormat.isSnapshot(is)) {
+                action.accept(SnapshotFormat.readFully(is));
+                return;
+            }
+
+            byte[] prefix = header ? readHeader(is) : new byte[0];
+            byte[] buffer = Arrays.copyOf(prefix, prefix.length + batchSize);
+            int length = prefix.length;
+            boolean handled = false;
+            while(true) {
+                int read = is.read(buffer, length, buffer.length - length);
+                if(read == -1) {
+                    if(length > prefix.length || !handled) {
+                        action.accept(ByteBuffer.wrap(buffer, 0, length));
+                    }
+                    return;
+                }
+                length += read;
+                if(length < buffer.length) {
+                    continue;
+                }
+
+                int end = afterLastLine(buffer, prefix.length, length);
+                if(end == -1) {
+                    // a single line doesn't fit into the batch
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                action.accept(ByteBuffer.wrap(buffer, 0, end));
+                handled = true;
+                // the start of the next line moves to the front, behind the header
+                System.arraycopy(buffer, end, buffer, prefix.length, length - end);
+                length = prefix.length + length - end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The comments before the header and the header itself, including the line break
+     */
+    private static byte[] readHeader(InputStream is) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        boolean lineStart = true;
+        boolean comment = false;
+        int b;
+        while((b = is.read()) != -1) {
+            header.write(b);
+            if(lineStart) {
+                comment = b == '#';
+            }
+            lineStart = b == '\n';
+            if(lineStart && !comment) {
+                break;
+            }
+        }
+        return header.toByteArray();
+    }
+
+    /**
+     * @return The index after the last line break between start and end, or -1 if there is none
+     */
+    private static int afterLastLine(byte[] buffer, int start, int end) {
+        for(int i = end - 1; i >= start; i--) {
+            if(buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
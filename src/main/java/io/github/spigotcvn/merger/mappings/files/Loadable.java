@@ -1,5 +1,7 @@
 package io.github.spigotcvn.merger.mappings.files;
 
+import io.github.spigotcvn.merger.util.CompressedFiles;
+
 import java.io.*;
 
 public interface Loadable {
@@ -15,11 +17,12 @@ public interface Loadable {
     /**
      * Loads the class from a file and catches the IOException
      * If you need to catch it again, catch it as an UncheckedIOException
+     * Gzip compressed files are decompressed while they are read
      * @see #loadFromStream(InputStream)
      * @param file The file to load from
      */
     default void loadFromFile(File file) {
-        try(InputStream os = new FileInputStream(file)) {
+        try(InputStream os = CompressedFiles.openInput(file)) {
             loadFromStream(os);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -0,0 +1,114 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.storage.SlotIndex;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+/**
+ * A frozen table that translates mappings from one namespace of a {@link TinyMappingFile} directly into another,
+ * with a single hash lookup and without going through the original mapping.
+ * <p>
+ * The table is a copy of the mappings at the time it was created, it isn't updated when the file changes.
+ * Get it through {@link TinyMappingFile#getTranslation(String, String)}, which caches it until the file changes.
+ * Safe to use from multiple threads.
+ */
+public final class NamespaceTranslation {
+    private final String fromNamespace;
+    private final String toNamespace;
+    private final Mapping[] from;
+    private final Mapping[] to;
+    private final SlotIndex<Mapping> index;
+
+    NamespaceTranslation(TinyMappingFile tiny, String fromNamespace, String toNamespace) {
+        this.fromNamespace = fromNamespace;
+        this.toNamespace = toNamespace;
+
+        int size = tiny.size();
+        from = new Mapping[size];
+        to = new Mapping[size];
+        ExecutionContext.current().forEachIndex(size, row -> {
+            Mapping original = tiny.getOriginalMapping(row);
+            from[row] = toMapping(original, tiny.getName(fromNamespace, row));
+            to[row] = toMapping(original, tiny.getName(toNamespace, row));
+        });
+
+        index = new SlotIndex<Mapping>(size) {
+            @Override
+            protected int hashRow(int row) {
+                return from[row].hashCode();
+            }
+
+            @Override
+            protected boolean matches(int row, Mapping key) {
+                return from[row].equals(key);
+            }
+
+            @Override
+            protected boolean sameKey(int row, int otherRow) {
+                return from[row].equals(from[otherRow]);
+            }
+
+            @Override
+            protected boolean isIndexed(int row) {
+                return from[row] != null;
+            }
+        };
+        index.rebuild(size);
+    }
+
+    /**
+     * Translates a mapping. The class name and descriptor of the mapping have to be the ones of the original mapping,
+     * like the ones returned by {@link TinyMappingFile#getMapping(String, Mapping)}.
+     * @param mapping The mapping like it is named in the namespace translated from
+     * @return The mapping like it is named in the namespace translated to, or null if there is none
+     */
+    public Mapping translate(Mapping mapping) {
+        if(mapping == null) {
+            throw new IllegalArgumentException("Mapping cannot be null");
+        }
+
+        int row = index.find(mapping);
+        return row == -1 ? null : to[row];
+    }
+
+    /**
+     * @return The amount of rows, the same as the amount of original mappings in the file
+     */
+    public int size() {
+        return from.length;
+    }
+
+    /**
+     * @param row The position of the original mapping in the file
+     * @return The mapping like it is named in the namespace translated from, or null if it isn't mapped in it
+     */
+    public Mapping getFrom(int row) {
+        return from[row];
+    }
+
+    /**
+     * @param row The position of the original mapping in the file
+     * @return The mapping like it is named in the namespace translated to, or null if it isn't mapped in it
+     */
+    public Mapping getTo(int row) {
+        return to[row];
+    }
+
+    public String getFromNamespace() {
+        return fromNamespace;
+    }
+
+    public String getToNamespace() {
+        return toNamespace;
+    }
+
+    private static Mapping toMapping(Mapping original, String name) {
+        if(name == null) {
+            return null;
+        }
+        if(name == original.getName()) {
+            return original;
+        }
+        return new Mapping(original.getType(), name, original.getClassName(), original.getDescriptor());
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.spigotcvn.merger.mappings.files;
 
+import io.github.spigotcvn.merger.util.CompressedFiles;
+
 import java.io.*;
 
 public interface Saveable {
@@ -15,11 +17,12 @@ public interface Saveable {
     /**
      * Saves the class to a file and catches the IOException
      * If you need to catch it again, catch it as an UncheckedIOException
+     * Files with a name ending in ".gz" are gzip compressed
      * @see #saveToStream(OutputStream)
      * @param file The file to save to
      */
     default void saveToFile(File file) {
-        try(OutputStream os = new FileOutputStream(file)) {
+        try(OutputStream os = CompressedFiles.openOutput(file)) {
             saveToStream(os);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -0,0 +1,210 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.CompressedFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Shared parts of the binary snapshot formats.
+ * <p>
+ * Every snapshot starts with a header of the magic number, the format version, the kind of mappings it
+ * contains, the amount of strings in its string pool and the amount of entries. The header is followed by
+ * the string pool, every string stored as its length in bytes and its UTF-8 bytes. Everything after the pool refers to
+ * strings by their index in the pool, -1 means null. All numbers are big endian.
+ */
+public final class SnapshotFormat {
+    static final int MAGIC = 0x4D4D534E; // MMSN
+    static final int VERSION = 1;
+    static final byte KIND_TINY = 1;
+    static final byte KIND_CSRG = 2;
+
+    private static final Mapping.Type[] TYPES = Mapping.Type.values();
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * @return Whether the buffer starts with a snapshot header
+     */
+    static boolean isSnapshot(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * Checks whether a stream starts with a snapshot header, without consuming anything from it.
+     * @param is The stream, it has to support marking
+     * @return Whether the stream starts with a snapshot header
+     */
+    static boolean isSnapshot(InputStream is) throws IOException {
+        is.mark(4);
+        try {
+            int magic = 0;
+            for(int i = 0; i < 4; i++) {
+                int b = is.read();
+                if(b == -1) {
+                    return false;
+                }
+                magic = magic << 8 | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            is.reset();
+        }
+    }
+
+    /**
+     * Checks whether a file is a snapshot, without parsing it.
+     * @param file The file, may be compressed
+     * @return Whether the file starts with a snapshot header
+     */
+    public static boolean isSnapshot(File file) {
+        return readKind(file) != 0;
+    }
+
+    /**
+     * @param file The file, may be compressed
+     * @return Whether the file is a snapshot of tiny mappings
+     */
+    public static boolean isTinySnapshot(File file) {
+        return readKind(file) == KIND_TINY;
+    }
+
+    /**
+     * @return The kind of the snapshot, or 0 if the file isn't a snapshot
+     */
+    private static byte readKind(File file) {
+        try(DataInputStream is = new DataInputStream(new BufferedInputStream(CompressedFiles.openInput(file)))) {
+            if(!isSnapshot(is)) {
+                return 0;
+            }
+            is.readInt();
+            is.readInt();
+            return is.readByte();
+        } catch (EOFException e) {
+            // only the magic number
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a whole stream into a buffer.
+     */
+    static ByteBuffer readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while((read = is.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Checks the header of a snapshot and moves the buffer behind the magic number, version and kind.
+     * @param buffer The buffer
+     * @param kind The kind of mappings the snapshot has to contain
+     * @throws InvalidMappingFormatException If the buffer isn't a snapshot of the given kind
+     */
+    static void readHeader(ByteBuffer buffer, byte kind) throws InvalidMappingFormatException {
+        if(buffer.remaining() < 9 || buffer.getInt() != MAGIC) {
+            throw new InvalidMappingFormatException("Not a mapping snapshot");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new InvalidMappingFormatException("Unsupported snapshot version: " + version);
+        }
+        byte actualKind = buffer.get();
+        if(actualKind != kind) {
+            throw new InvalidMappingFormatException("Unexpected snapshot kind: " + actualKind);
+        }
+    }
+
+    static void writeHeader(DataOutputStream out, byte kind) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+    }
+
+    /**
+     * Reads the string pool and interns all of its strings.
+     * @param buffer The buffer, positioned at the start of the pool
+     * @param count The amount of strings in the pool
+     * @param symbolTable The symbol table to intern the strings with
+     * @return The strings, indexed by their id
+     */
+    static String[] readPool(ByteBuffer buffer, int count, SymbolTable symbolTable) throws InvalidMappingFormatException {
+        if(count < 0) {
+            throw new InvalidMappingFormatException("Invalid string pool size: " + count);
+        }
+        String[] pool = new String[count];
+        byte[] bytes = new byte[256];
+        for(int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if(length < 0 || length > buffer.remaining()) {
+                throw new InvalidMappingFormatException("Invalid string length: " + length);
+            }
+            if(bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            pool[i] = symbolTable.intern(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+        return pool;
+    }
+
+    static String string(String[] pool, int id) throws InvalidMappingFormatException {
+        if(id == -1) {
+            return null;
+        }
+        if(id < 0 || id >= pool.length) {
+            throw new InvalidMappingFormatException("Invalid string id: " + id);
+        }
+        return pool[id];
+    }
+
+    static Mapping.Type type(byte id) throws InvalidMappingFormatException {
+        if(id < 0 || id >= TYPES.length) {
+            throw new InvalidMappingFormatException("Invalid mapping type: " + id);
+        }
+        return TYPES[id];
+    }
+
+    /**
+     * Collects strings and assigns them ids in the order they are first added.
+     */
+    static class PoolBuilder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void add(String string) {
+            if(string != null && !ids.containsKey(string)) {
+                ids.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+
+        int id(String string) {
+            return string == null ? -1 : ids.get(string);
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            for(String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
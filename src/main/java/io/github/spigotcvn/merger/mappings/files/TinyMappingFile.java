@@ -1,31 +1,106 @@
 package io.github.spigotcvn.merger.mappings.files;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import io.github.spigotcvn.merger.diff.MappingChange;
+import io.github.spigotcvn.merger.diff.MappingDiff;
 import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.storage.MappingTable;
 import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Counter;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.util.IndexSpliterator;
+import io.github.spigotcvn.merger.util.OrderedBatchWriter;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+import io.github.spigotcvn.merger.validation.MappingValidator;
+import io.github.spigotcvn.merger.validation.MissingNamePolicy;
+import io.github.spigotcvn.merger.validation.ValidationReport;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class TinyMappingFile implements BufferLoadable, Saveable {
+    // buffers smaller than this are not split into multiple chunks
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    // amount of lines that are encoded together when saving
+    private static final int SAVE_BATCH_SIZE = 4096;
 
-public class TinyMappingFile implements Loadable, Saveable {
     private String originalNamespace;
-    // structure: Map (String namespace, List (Pair (Mapping from, Mapping to)))
-    private Map<String, BiMap<Mapping, Mapping>> namespaces = new LinkedHashMap<>();
+    // every original mapping is stored once as a row, every namespace is a column of names
+    private final MappingTable table;
+    private SymbolTable symbolTable = SymbolTable.create();
+    // translation tables by the namespace they translate from and to, only valid while the table doesn't change
+    private final Map<String, Map<String, NamespaceTranslation>> translations = new HashMap<>();
+    private int translationsModificationCount;
+    private MissingNamePolicy missingNamePolicy = MissingNamePolicy.FILL;
+    private final List<Mapping> originalMappingsView = new OriginalMappingsView();
+    private final Map<String, Map<Mapping, Mapping>> namespacesView = new NamespacesView();
+
+    public TinyMappingFile() {
+        this(new MappingTable());
+    }
+
+    private TinyMappingFile(MappingTable table) {
+        this.table = table;
+    }
 
     public void addNamespace(String namespace) {
-        if(namespace == null || namespaces.containsKey(namespace)) {
+        if(namespace == null || table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Invalid namespace: " + namespace);
         }
-        namespaces.put(namespace, HashBiMap.create());
+        table.addColumn(namespace);
     }
 
     public void removeNamespace(String namespace) {
-        if(namespace == null || !namespaces.containsKey(namespace)) {
+        if(namespace == null || !table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Invalid namespace: " + namespace);
         }
-        namespaces.remove(namespace);
+        table.removeColumn(namespace);
+        if(table.getColumnNames().isEmpty()) {
+            // original mappings only exist as long as there is a namespace they are mapped in
+            table.clear();
+        }
+    }
+
+    /**
+     * Makes a namespace the original namespace, in place.
+     * Every original mapping is renamed to the name it has in the namespace, or keeps its name if it isn't mapped in it,
+     * and the namespace itself is removed. The names in all other namespaces are kept, the names of the
+     * old original namespace are dropped.
+     * <p>
+     * Original mappings that end up being equal are merged and original mappings that have no name in any namespace
+     * anymore are removed, like they would be when adding every mapping again through {@link #addMapping(String, Mapping, Mapping)}.
+     * @param namespace The namespace that becomes the original namespace
+     * @param newOriginalNamespace The new name of the original namespace
+     * @param referenceRemapper Rewrites the class name and descriptor of every new original mapping, called from multiple threads at once
+     */
+    public void replaceOriginalNamespace(String namespace, String newOriginalNamespace, UnaryOperator<Mapping> referenceRemapper) {
+        if(namespace == null || newOriginalNamespace == null || referenceRemapper == null) {
+            throw new IllegalArgumentException("Invalid arguments: " + namespace + ", " + newOriginalNamespace + ", " + referenceRemapper);
+        }
+        checkNamespace(namespace);
+
+        Mapping[] originals = new Mapping[table.size()];
+        ExecutionContext.current().forEachIndex(originals.length, row -> {
+            Mapping original = table.getOriginal(row);
+            Mapping renamed = toMapping(original, getName(namespace, row));
+            originals[row] = symbolTable.intern(referenceRemapper.apply(renamed == null ? original : renamed));
+        });
+
+        table.setOriginals(originals);
+        if(table.hasColumn(namespace)) {
+            table.removeColumn(namespace);
+        }
+        setOriginalNamespaceName(newOriginalNamespace);
+        table.compact();
     }
 
     public Mapping getMapping(String namespace, Mapping from) {
@@ -36,11 +111,15 @@ public class TinyMappingFile implements Loadable, Saveable {
         if(namespace.equals(originalNamespace)) {
             return from;
         }
-        Map<Mapping, Mapping> mappings = namespaces.get(namespace);
-        if(mappings == null) {
+        if(!table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Unknown namespace: " + namespace);
         }
-        return mappings.get(from);
+
+        int row = table.indexOf(from);
+        if(row == -1) {
+            return null;
+        }
+        return toMapping(table.getOriginal(row), table.getName(namespace, row));
     }
 
     public Mapping getMappingFromNamespace(String fromNamespace, String namespace, Mapping fromMapping) {
@@ -65,6 +144,14 @@ public class TinyMappingFile implements Loadable, Saveable {
         return getMapping(namespace, original);
     }
 
+    /**
+     * Looks up the original form of a mapping.
+     * As only names are stored per namespace, the class name and descriptor of the mapping
+     * have to be the ones of the original mapping, like the ones returned by {@link #getMapping(String, Mapping)}.
+     * @param namespace The namespace the mapping is in
+     * @param to The mapping
+     * @return The original mapping or null if there is none
+     */
     public Mapping getOriginal(String namespace, Mapping to) {
         if(namespace == null || to == null) {
             throw new IllegalArgumentException("Invalid arguments: " + namespace + ", " + to);
@@ -74,13 +161,21 @@ public class TinyMappingFile implements Loadable, Saveable {
             return to;
         }
 
-        BiMap<Mapping, Mapping> mappings = namespaces.get(namespace);
-        if(mappings == null) {
+        if(!table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Unknown namespace: " + namespace);
         }
-        return mappings.inverse().get(to);
+        int row = table.indexOf(namespace, to);
+        return row == -1 ? null : table.getOriginal(row);
     }
 
+    /**
+     * Adds a mapping to a namespace.
+     * Only the name of the mapping is stored in the namespace, the class name and descriptor
+     * are always taken from the original mapping.
+     * @param namespace The namespace to add the mapping to
+     * @param from The original mapping
+     * @param to The mapping like it is named in the namespace
+     */
     public void addMapping(String namespace, Mapping from, Mapping to) {
         if(namespace == null || from == null || to == null) {
             throw new IllegalArgumentException("Invalid arguments: " + namespace + ", " + from + ", " + to);
@@ -90,20 +185,134 @@ public class TinyMappingFile implements Loadable, Saveable {
             throw new IllegalArgumentException("Cannot add mapping to the original namespace: " + namespace);
         }
 
-        Map<Mapping, Mapping> mappings = namespaces.get(namespace);
-        if(mappings == null) {
+        if(!table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Unknown namespace: " + namespace);
         }
-        mappings.put(from, to);
+        int row = table.indexOf(from);
+        if(row == -1) {
+            row = table.addRow(symbolTable.intern(from));
+        }
+        table.setName(namespace, row, symbolTable.intern(to.getName()));
+    }
+
+    /**
+     * @return The amount of original mappings in this file
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Gets an original mapping by its position in the file.
+     * @param row The position of the mapping, from 0 until {@link #size()}
+     * @return The original mapping
+     */
+    public Mapping getOriginalMapping(int row) {
+        return table.getOriginal(row);
+    }
+
+    /**
+     * Looks up the position of an original mapping in the file.
+     * @param original The original mapping
+     * @return The position of the mapping, or -1 if the file doesn't contain it
+     */
+    public int indexOf(Mapping original) {
+        if(original == null) {
+            throw new IllegalArgumentException("Mapping cannot be null");
+        }
+        return table.indexOf(original);
     }
 
+    /**
+     * Gets the name an original mapping has in a namespace by its position in the file.
+     * @param namespace The namespace
+     * @param row The position of the mapping, from 0 until {@link #size()}
+     * @return The name or null if the mapping isn't mapped in the namespace
+     */
+    public String getName(String namespace, int row) {
+        if(namespace == null) {
+            throw new IllegalArgumentException("Invalid namespace: " + namespace);
+        }
+
+        if(namespace.equals(originalNamespace)) {
+            return table.getOriginal(row).getName();
+        }
+        if(!table.hasColumn(namespace)) {
+            throw new IllegalArgumentException("Unknown namespace: " + namespace);
+        }
+        return table.getName(namespace, row);
+    }
+
+    /**
+     * Sets the name an original mapping has in a namespace by its position in the file.
+     * @param namespace The namespace
+     * @param row The position of the mapping, from 0 until {@link #size()}
+     * @param name The name
+     */
+    public void setName(String namespace, int row, String name) {
+        if(namespace == null || name == null) {
+            throw new IllegalArgumentException("Invalid arguments: " + namespace + ", " + name);
+        }
+
+        if(namespace.equals(originalNamespace)) {
+            throw new IllegalArgumentException("Cannot set names of the original namespace: " + namespace);
+        }
+        if(!table.hasColumn(namespace)) {
+            throw new IllegalArgumentException("Unknown namespace: " + namespace);
+        }
+        table.setName(namespace, row, symbolTable.intern(name));
+    }
+
+    /**
+     * Replaces all original mappings at once, keeping the names they have in every namespace.
+     * The parts of the mappings should already be interned through {@link #getSymbolTable()}.
+     * <p>
+     * Original mappings that end up being equal are merged into the first of them, keeping the name of the last one
+     * in every namespace, like they would be when adding every mapping again through {@link #addMapping(String, Mapping, Mapping)}.
+     * @param originals The new original mappings, in the same order as the ones they replace
+     */
+    public void setOriginalMappings(Mapping[] originals) {
+        if(originals == null) {
+            throw new IllegalArgumentException("Mappings cannot be null");
+        }
+        table.setOriginals(originals);
+        table.compact();
+    }
+
+    /**
+     * Replaces all names of a namespace at once.
+     * The names should already be interned through {@link #getSymbolTable()}.
+     * @param namespace The namespace
+     * @param names The new names, in the same order as the original mappings, null if a mapping isn't mapped
+     */
+    public void setNames(String namespace, String[] names) {
+        if(namespace == null || names == null) {
+            throw new IllegalArgumentException("Invalid arguments: " + namespace + ", " + names);
+        }
+
+        if(namespace.equals(originalNamespace)) {
+            throw new IllegalArgumentException("Cannot set names of the original namespace: " + namespace);
+        }
+        if(!table.hasColumn(namespace)) {
+            throw new IllegalArgumentException("Unknown namespace: " + namespace);
+        }
+        table.setNames(namespace, names);
+    }
+
+    /**
+     * @return A copy of all original mappings, use {@link #getOriginalMappingsView()} if no copy is needed
+     */
     public List<Mapping> getOriginalMappings() {
-        List<Mapping> mappings = new ArrayList<>();
-        Map<Mapping, Mapping> firstNamespace = namespaces.get(namespaces.keySet().iterator().next());
-        firstNamespace.forEach((from, to) -> mappings.add(from));
+        List<Mapping> mappings = new ArrayList<>(table.size());
+        for(int row = 0; row < table.size(); row++) {
+            mappings.add(table.getOriginal(row));
+        }
         return mappings;
     }
 
+    /**
+     * @return A copy of all mappings like they are named in the namespace, use {@link #getNamespaceView(String)} if no copy is needed
+     */
     public List<Mapping> getMappings(String namespace) {
         if(namespace == null) {
             throw new IllegalArgumentException("Invalid namespace: " + namespace);
@@ -113,39 +322,262 @@ public class TinyMappingFile implements Loadable, Saveable {
             return getOriginalMappings();
         }
 
-        if(!namespaces.containsKey(namespace)) {
+        if(!table.hasColumn(namespace)) {
             throw new IllegalArgumentException("Unknown namespace: " + namespace);
         }
 
-        List<Mapping> mappings = new ArrayList<>();
-        Map<Mapping, Mapping> namespaceMappings = namespaces.get(namespace);
-        namespaceMappings.forEach((from, to) -> mappings.add(to));
+        List<Mapping> mappings = new ArrayList<>(table.size());
+        for(int row = 0; row < table.size(); row++) {
+            String name = table.getName(namespace, row);
+            if(name != null) {
+                mappings.add(toMapping(table.getOriginal(row), name));
+            }
+        }
         return mappings;
     }
 
+    /**
+     * @return The names of all namespaces except the original one, in the order they are saved in
+     */
+    public Set<String> getNamespaceNames() {
+        return table.getColumnNames();
+    }
+
+    /**
+     * @return A deep copy of all namespaces except the original one, use {@link #getNamespacesView()} if no copy is needed
+     */
     public Map<String, Map<Mapping, Mapping>> getNamespaces() {
-        // create a deep copy of the namespaces map
+        // create a deep copy of the namespaces
         Map<String, Map<Mapping, Mapping>> copy = new LinkedHashMap<>();
-        for(Map.Entry<String, BiMap<Mapping, Mapping>> entry : namespaces.entrySet()) {
-            BiMap<Mapping, Mapping> mappings = HashBiMap.create();
-            mappings.putAll(entry.getValue());
-            copy.put(entry.getKey(), mappings);
+        for(String namespace : table.getColumnNames()) {
+            Map<Mapping, Mapping> mappings = new LinkedHashMap<>();
+            for(int row = 0; row < table.size(); row++) {
+                Mapping original = table.getOriginal(row);
+                String name = table.getName(namespace, row);
+                if(name != null) {
+                    mappings.put(original, toMapping(original, name));
+                }
+            }
+            copy.put(namespace, mappings);
         }
         return copy;
     }
 
+    /**
+     * @return A live, unmodifiable view of all original mappings, in the order they are saved in
+     */
+    public List<Mapping> getOriginalMappingsView() {
+        return originalMappingsView;
+    }
+
+    /**
+     * Gets a live, unmodifiable view of a namespace, which maps every original mapping that is mapped in
+     * the namespace to the mapping like it is named in it.
+     * The view stops working once the namespace is removed.
+     * @param namespace The namespace, can be the original one
+     * @return The view, iterated in the order the mappings are saved in
+     */
+    public Map<Mapping, Mapping> getNamespaceView(String namespace) {
+        if(namespace == null) {
+            throw new IllegalArgumentException("Invalid namespace: " + namespace);
+        }
+        checkNamespace(namespace);
+        return new NamespaceView(namespace);
+    }
+
+    /**
+     * @return A live, unmodifiable view of all namespaces except the original one, see {@link #getNamespaceView(String)}
+     */
+    public Map<String, Map<Mapping, Mapping>> getNamespacesView() {
+        return namespacesView;
+    }
+
+    /**
+     * Streams all original mappings without copying them.
+     * The stream can be split evenly for parallel work, the mappings shouldn't be changed while it is used.
+     * @return A sequential stream of the original mappings, in the order they are saved in
+     */
+    public Stream<Mapping> streamOriginalMappings() {
+        return StreamSupport.stream(originalMappingsView.spliterator(), false);
+    }
+
+    /**
+     * Streams all mappings of a namespace without copying them.
+     * The stream can be split evenly for parallel work, the mappings shouldn't be changed while it is used.
+     * @param namespace The namespace, can be the original one
+     * @return A sequential stream of entries from original mappings to the mappings like they are named in the namespace,
+     * in the order they are saved in. Original mappings that aren't mapped in the namespace are left out.
+     */
+    public Stream<Map.Entry<Mapping, Mapping>> streamMappings(String namespace) {
+        if(namespace == null) {
+            throw new IllegalArgumentException("Invalid namespace: " + namespace);
+        }
+        checkNamespace(namespace);
+        return StreamSupport.stream(new IndexSpliterator<>(row -> entry(namespace, row), 0, table.size(), 0), false)
+                .filter(Objects::nonNull);
+    }
+
     public String getOriginalNamespaceName() {
         return originalNamespace;
     }
 
     public void setOriginalNamespaceName(String originalNamespace) {
         this.originalNamespace = originalNamespace;
+        synchronized(this) {
+            translations.clear();
+        }
+    }
+
+    /**
+     * Gets a table that translates mappings from one namespace directly into another.
+     * Building the table takes one pass over all mappings, after that every translation is a single lookup,
+     * which is a lot faster than {@link #getMappingFromNamespace(String, String, Mapping)} when translating many mappings.
+     * The table is cached until the mappings in this file change.
+     * @param fromNamespace The namespace to translate from
+     * @param toNamespace The namespace to translate to
+     * @return The translation table
+     */
+    public synchronized NamespaceTranslation getTranslation(String fromNamespace, String toNamespace) {
+        if(fromNamespace == null || toNamespace == null) {
+            throw new IllegalArgumentException("Invalid arguments: " + fromNamespace + ", " + toNamespace);
+        }
+        checkNamespace(fromNamespace);
+        checkNamespace(toNamespace);
+
+        if(translationsModificationCount != table.getModificationCount()) {
+            translations.clear();
+            translationsModificationCount = table.getModificationCount();
+        }
+        return translations.computeIfAbsent(fromNamespace, namespace -> new HashMap<>())
+                .computeIfAbsent(toNamespace, namespace -> new NamespaceTranslation(this, fromNamespace, toNamespace));
+    }
+
+    private void checkNamespace(String namespace) {
+        if(!namespace.equals(originalNamespace) && !table.hasColumn(namespace)) {
+            throw new IllegalArgumentException("Unknown namespace: " + namespace);
+        }
+    }
+
+    /**
+     * Copies the mappings, the copy uses the same symbol table and keeps the translation tables built so far.
+     * @return A copy of these mappings that can be changed without changing these ones
+     */
+    public synchronized TinyMappingFile copy() {
+        TinyMappingFile copy = new TinyMappingFile(table.copy());
+        copy.originalNamespace = originalNamespace;
+        copy.symbolTable = symbolTable;
+        copy.missingNamePolicy = missingNamePolicy;
+        if(translationsModificationCount == table.getModificationCount()) {
+            translations.forEach((from, byTo) -> copy.translations.put(from, new HashMap<>(byTo)));
+            copy.translationsModificationCount = translationsModificationCount;
+        }
+        return copy;
+    }
+
+    /**
+     * Removes all namespaces and mappings.
+     */
+    void clear() {
+        new ArrayList<>(table.getColumnNames()).forEach(table::removeColumn);
+        table.clear();
+    }
+
+    /**
+     * @return The table the mappings are stored in, for loaders in this package
+     */
+    MappingTable getTable() {
+        return table;
+    }
+
+    /**
+     * Compares these mappings with newer ones, see {@link MappingDiff}.
+     * @param newer The newer mappings
+     * @param changes Called with every change, one at a time
+     */
+    public void diff(TinyMappingFile newer, Consumer<MappingChange> changes) {
+        MappingDiff.diff(this, newer, changes);
+    }
+
+    /**
+     * Loads a tiny file in batches of whole lines, every batch is loaded as a file of its own with the namespaces of the file.
+     * Only one batch is held in memory at a time, so files can be processed without loading all of them.
+     * Snapshots are loaded as a single batch.
+     * @param file The file to load
+     * @param batchSize The approximate size of a batch in bytes
+     * @param action Called with every batch, in the order they are in the file, and at least once
+     */
+    public static void loadBatches(File file, int batchSize, Consumer<TinyMappingFile> action) {
+        LineBatches.read(file, batchSize, true, buffer -> {
+            TinyMappingFile batch = new TinyMappingFile();
+            try {
+                batch.loadFromBuffer(buffer);
+            } catch (InvalidMappingFormatException e) {
+                throw new UncheckedIOException(e);
+            }
+            action.accept(batch);
+        });
+    }
+
+    /**
+     * @return What saving does with mappings that have no name in one of the namespaces
+     */
+    public MissingNamePolicy getMissingNamePolicy() {
+        return missingNamePolicy;
+    }
+
+    /**
+     * @param missingNamePolicy What saving does with mappings that have no name in one of the namespaces, fills in the original name by default
+     */
+    public void setMissingNamePolicy(MissingNamePolicy missingNamePolicy) {
+        if(missingNamePolicy == null) {
+            throw new IllegalArgumentException("Policy cannot be null");
+        }
+        this.missingNamePolicy = missingNamePolicy;
+    }
+
+    /**
+     * Checks these mappings for problems, see {@link MappingValidator}.
+     * @return The problems found by all checks
+     */
+    public ValidationReport validate() {
+        return MappingValidator.validate(this);
+    }
+
+    /**
+     * @return The symbol table all names stored in this file go through
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Sets the symbol table that names added from now on will go through.
+     * Share one symbol table between multiple files to store names they have in common only once.
+     * @param symbolTable The symbol table
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        if(symbolTable == null) {
+            throw new IllegalArgumentException("Symbol table cannot be null");
+        }
+        this.symbolTable = symbolTable;
     }
 
     @Override
     public void loadFromStream(InputStream is) throws InvalidMappingFormatException {
-        namespaces.clear();
-        try(BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+        try(Phase phase = Metrics.start("tiny.load")) {
+            readStream(is);
+            phase.setEntries(table.size());
+        }
+    }
+
+    private void readStream(InputStream is) throws InvalidMappingFormatException {
+        try(BufferedInputStream buffered = new BufferedInputStream(is)) {
+            if(SnapshotFormat.isSnapshot(buffered)) {
+                new TinyMappingSnapshot(this).loadFromStream(buffered);
+                return;
+            }
+            clear();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(buffered));
             int lineCount = 0;
             String line;
             List<String> namespaces = new ArrayList<>();
@@ -156,13 +588,13 @@ public class TinyMappingFile implements Loadable, Saveable {
                 if(lineCount == 0 && !line.startsWith("v1")) {
                     throw new InvalidMappingFormatException("Invalid version: " + line);
                 } else if(lineCount == 0) {
-                    String formatted = line.replaceFirst("v1\t", "").trim();
+                    String formatted = (line.startsWith("v1\t") ? line.substring(3) : line).trim();
                     String[] parts = formatted.split("\t");
                     namespaces.addAll(Arrays.asList(parts));
                     originalNamespace = namespaces.get(0);
                     namespaces.remove(0);
                     for(String namespace : namespaces) {
-                        addNamespace(namespace);
+                        addNamespace(symbolTable.intern(namespace));
                     }
                     lineCount++;
                     continue;
@@ -172,125 +604,390 @@ public class TinyMappingFile implements Loadable, Saveable {
                 if(parts.length < namespaces.size() + 1) {
                     throw new InvalidMappingFormatException("Invalid line: " + line);
                 }
+                for (int i = 1; i < parts.length; i++) {
+                    parts[i] = symbolTable.intern(parts[i]);
+                }
                 if(parts[0].equals("CLASS")) {
+                    int row = table.addRow(new Mapping(Mapping.Type.CLASS, parts[1], null, null));
                     for (int i = 1; i < parts.length - 1; i++) {
-                        addMapping(
-                                namespaces.get(i - 1),
-                                new Mapping(
-                                        Mapping.Type.CLASS,
-                                        parts[1],
-                                        null,
-                                        null
-                                ),
-                                new Mapping(
-                                        Mapping.Type.CLASS,
-                                        parts[i + 1],
-                                        null,
-                                        null
-                                )
-                        );
-                    }
-                }
-                if(parts[0].equals("FIELD")) {
-                    // following format: FIELD className descriptor originalName otherName
-                    for (int i = 3; i < parts.length - 1; i++) {
-                        addMapping(
-                                namespaces.get(i - 3),
-                                new Mapping(
-                                        Mapping.Type.FIELD,
-                                        parts[3],
-                                        parts[1],
-                                        parts[2]
-                                ),
-                                new Mapping(
-                                        Mapping.Type.FIELD,
-                                        parts[i + 1],
-                                        parts[1],
-                                        parts[2]
-                                )
-                        );
+                        table.setName(namespaces.get(i - 1), row, parts[i + 1]);
                     }
                 }
-                if(parts[0].equals("METHOD")) {
-                    // following format: METHOD className descriptor originalName otherName
+                if(parts[0].equals("FIELD") || parts[0].equals("METHOD")) {
+                    // following format: FIELD/METHOD className descriptor originalName otherName
+                    Mapping.Type type = parts[0].equals("FIELD") ? Mapping.Type.FIELD : Mapping.Type.METHOD;
+                    int row = table.addRow(new Mapping(type, parts[3], parts[1], parts[2]));
                     for (int i = 3; i < parts.length - 1; i++) {
-                        addMapping(
-                                namespaces.get(i - 3),
-                                new Mapping(
-                                        Mapping.Type.METHOD,
-                                        parts[3],
-                                        parts[1],
-                                        parts[2]
-                                ),
-                                new Mapping(
-                                        Mapping.Type.METHOD,
-                                        parts[i + 1],
-                                        parts[1],
-                                        parts[2]
-                                )
-                        );
+                        table.setName(namespaces.get(i - 3), row, parts[i + 1]);
                     }
                 }
 
                 lineCount++;
             }
+        } catch (InvalidMappingFormatException e) {
+            throw e;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Loads the mappings directly from the bytes of a tiny v1 file.
+     * Lines and fields are split on the bytes, only the names that are stored get decoded.
+     * Big buffers are split into chunks of whole lines that are parsed in parallel,
+     * the mappings are stored in the same order as they are in the buffer.
+     * Buffers containing a {@link TinyMappingSnapshot} are loaded as snapshot.
+     * @param buffer The buffer to load from, from its position to its limit
+     * @throws InvalidMappingFormatException If the buffer doesn't contain a valid tiny v1 file
+     */
+    @Override
+    public void loadFromBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        try(Phase phase = Metrics.start("tiny.load")) {
+            readBuffer(buffer);
+            phase.setEntries(table.size());
+        }
+    }
+
+    private void readBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        if (SnapshotFormat.isSnapshot(buffer)) {
+            new TinyMappingSnapshot(this).loadFromBuffer(buffer);
+            return;
+        }
+        clear();
+
+        ByteLineTokenizer tokenizer = new ByteLineTokenizer(buffer, buffer.position(), buffer.limit(), '\t', symbolTable);
+        List<String> namespaces = new ArrayList<>();
+        while (tokenizer.nextLine()) {
+            if (tokenizer.startsWith('#')) {
+                continue;
+            }
+            String line = tokenizer.line();
+            if (!line.startsWith("v1")) {
+                throw new InvalidMappingFormatException("Invalid version: " + line);
+            }
+            String formatted = (line.startsWith("v1\t") ? line.substring(3) : line).trim();
+            namespaces.addAll(Arrays.asList(formatted.split("\t")));
+            originalNamespace = namespaces.remove(0);
+            for (String namespace : namespaces) {
+                addNamespace(symbolTable.intern(namespace));
+            }
+            break;
+        }
+
+        int start = tokenizer.position();
+        ExecutionContext context = ExecutionContext.current();
+        int chunks = (int) Math.max(1, Math.min(
+                (buffer.limit() - start) / MIN_CHUNK_SIZE,
+                context.getParallelism() * 4L
+        ));
+        int[] bounds = ByteLineTokenizer.chunkBounds(buffer, start, buffer.limit(), chunks);
+
+        List<ParsedRows> parsed;
+        try {
+            parsed = context.call(() -> context.stream(IntStream.range(0, chunks))
+                    .mapToObj(chunk -> parseRows(buffer, bounds[chunk], bounds[chunk + 1], namespaces.size()))
+                    .collect(Collectors.toList()));
+        } catch (UncheckedIOException e) {
+            throw (InvalidMappingFormatException) e.getCause();
+        }
+
+        for (ParsedRows rows : parsed) {
+            for (int i = 0; i < rows.originals.size(); i++) {
+                int row = table.addRow(rows.originals.get(i));
+                for (int namespace = 0; namespace < namespaces.size(); namespace++) {
+                    String name = rows.names[i * namespaces.size() + namespace];
+                    if (name != null) {
+                        table.setName(namespaces.get(namespace), row, name);
+                    }
+                }
+            }
+        }
+    }
+
+    private ParsedRows parseRows(ByteBuffer buffer, int start, int end, int namespaces) {
+        ByteLineTokenizer tokenizer = new ByteLineTokenizer(buffer, start, end, '\t', symbolTable);
+        ParsedRows rows = new ParsedRows(namespaces);
+        while (tokenizer.nextLine()) {
+            if (tokenizer.startsWith('#')) {
+                continue;
+            }
+
+            int parts = tokenizer.fieldCount();
+            if (parts < namespaces + 1) {
+                throw new UncheckedIOException(new InvalidMappingFormatException("Invalid line: " + tokenizer.line()));
+            }
+            if (tokenizer.fieldEquals(0, "CLASS")) {
+                int row = rows.add(new Mapping(Mapping.Type.CLASS, tokenizer.field(1), null, null));
+                for (int i = 1; i < parts - 1; i++) {
+                    rows.setName(row, i - 1, tokenizer.field(i + 1));
+                }
+            } else if (tokenizer.fieldEquals(0, "FIELD") || tokenizer.fieldEquals(0, "METHOD")) {
+                // following format: FIELD/METHOD className descriptor originalName otherName
+                Mapping.Type type = tokenizer.fieldEquals(0, "FIELD") ? Mapping.Type.FIELD : Mapping.Type.METHOD;
+                int row = rows.add(new Mapping(type, tokenizer.field(3), tokenizer.field(1), tokenizer.field(2)));
+                for (int i = 3; i < parts - 1; i++) {
+                    rows.setName(row, i - 3, tokenizer.field(i + 1));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Saves the mappings in the tiny v1 format.
+     * Lines are encoded in parallel batches that are written as soon as they are done, in order,
+     * so only a few batches are held in memory at once.
+     * Mappings without a name in one of the namespaces are handled by the {@link #getMissingNamePolicy() missing name policy},
+     * with {@link MissingNamePolicy#FAIL} all of them are reported before anything is written.
+     * @param os The output stream to save to
+     */
     @Override
     public void saveToStream(OutputStream os) {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os), 1024 * 1024)) {
+        try(Phase phase = Metrics.start("tiny.save")) {
+            if(missingNamePolicy == MissingNamePolicy.FAIL) {
+                ValidationReport report = MappingValidator.validate(this, EnumSet.of(MappingValidator.Check.MISSING_NAMES));
+                if(!report.isEmpty()) {
+                    throw new IllegalStateException("Missing mappings:\n" + report);
+                }
+            }
+            writeStream(os);
+            phase.setEntries(table.size());
+        }
+    }
+
+    private void writeStream(OutputStream os) {
+        Charset charset = Charset.defaultCharset();
+        try (OutputStream out = new BufferedOutputStream(os, 1024 * 1024)) {
             StringBuilder sb = new StringBuilder();
 
             // Write header
             sb.append("v1").append("\t").append(originalNamespace);
-            for (String namespace : namespaces.keySet()) {
+            for (String namespace : table.getColumnNames()) {
                 sb.append("\t").append(namespace);
             }
             sb.append("\n");
-            writer.write(sb.toString());
-
-            // ReList StringBuilder for reuse
-            sb.setLength(0);
+            out.write(sb.toString().getBytes(charset));
 
             // Cache namespace entry Lists
-            List<String> namespaceKeys = new ArrayList<>(namespaces.keySet());
-            Map<Mapping, Mapping> firstNamespaceMappings = namespaces.get(namespaceKeys.get(0));
+            List<String> namespaceKeys = new ArrayList<>(table.getColumnNames());
+            int size = table.size();
+            // reported by the save phase instead of once per mapping
+            Counter filled = Metrics.counter("tiny.save.filled");
+            Counter skipped = Metrics.counter("tiny.save.skipped");
+            int batches = (size + SAVE_BATCH_SIZE - 1) / SAVE_BATCH_SIZE;
+
+            new OrderedBatchWriter().write(out, batches, batch -> {
+                StringBuilder lineBuilder = new StringBuilder();
+                String[] names = new String[namespaceKeys.size()];
+                int end = Math.min(size, (batch + 1) * SAVE_BATCH_SIZE);
+                for (int row = batch * SAVE_BATCH_SIZE; row < end; row++) {
+                    if (!namespaceKeys.isEmpty() && table.getName(namespaceKeys.get(0), row) == null) {
+                        // only mappings that are mapped in the first namespace are saved
+                        continue;
+                    }
+                    Mapping from = table.getOriginal(row);
+                    if (!getNames(row, namespaceKeys, from, names, filled)) {
+                        skipped.increment();
+                        continue;
+                    }
+
+                    lineBuilder.append(from.getType().name());
+                    if (from.getClassName() != null) {
+                        lineBuilder.append("\t").append(from.getClassName());
+                    }
+                    if (from.getDescriptor() != null) {
+                        lineBuilder.append("\t").append(from.getDescriptor());
+                    }
+                    lineBuilder.append("\t").append(from.getName());
+
+                    for (String to : names) {
+                        lineBuilder.append("\t").append(to);
+                    }
+                    lineBuilder.append("\n");
+                }
+                return lineBuilder.toString().getBytes(charset);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Collects the names of a row to save, filling in missing ones with the original name if the policy says so.
+     * @return Whether the row is saved
+     */
+    private boolean getNames(int row, List<String> namespaces, Mapping from, String[] names, Counter filled) {
+        for (int i = 0; i < names.length; i++) {
+            String name = table.getName(namespaces.get(i), row);
+            if (name == null) {
+                if (missingNamePolicy == MissingNamePolicy.SKIP) {
+                    return false;
+                }
+                // FAIL was checked before saving, but the names may have changed since
+                if (missingNamePolicy == MissingNamePolicy.FAIL) {
+                    throw new IllegalStateException("Missing mapping for " + from + " in " + namespaces.get(i));
+                }
+                filled.increment();
+                name = from.getName();
+            }
+            names[i] = name;
+        }
+        return true;
+    }
+
+    /**
+     * The rows parsed from one chunk of a file, before they are added to the table.
+     */
+    private static class ParsedRows {
+        private final int namespaces;
+        private final List<Mapping> originals = new ArrayList<>();
+        // names of all rows after each other, namespaces entries per row
+        private String[] names;
+
+        private ParsedRows(int namespaces) {
+            this.namespaces = namespaces;
+            this.names = new String[Math.max(namespaces, 1) * 1024];
+        }
+
+        private int add(Mapping original) {
+            originals.add(original);
+            int needed = originals.size() * namespaces;
+            if (needed > names.length) {
+                names = Arrays.copyOf(names, Math.max(needed, names.length * 2));
+            }
+            return originals.size() - 1;
+        }
+
+        private void setName(int row, int namespace, String name) {
+            if (namespace >= namespaces) {
+                throw new UncheckedIOException(new InvalidMappingFormatException("Too many names for " + originals.get(row)));
+            }
+            names[row * namespaces + namespace] = name;
+        }
+    }
+
+    /**
+     * @return The entry from the original mapping to the mapping in the namespace, or null if it isn't mapped in it
+     */
+    private Map.Entry<Mapping, Mapping> entry(String namespace, int row) {
+        Mapping original = table.getOriginal(row);
+        Mapping mapping = toMapping(original, getName(namespace, row));
+        return mapping == null ? null : new AbstractMap.SimpleImmutableEntry<>(original, mapping);
+    }
+
+    private class OriginalMappingsView extends AbstractList<Mapping> implements RandomAccess {
+        @Override
+        public Mapping get(int index) {
+            return table.getOriginal(index);
+        }
+
+        @Override
+        public int size() {
+            return table.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Mapping && table.indexOf((Mapping) o) != -1;
+        }
+
+        @Override
+        public Spliterator<Mapping> spliterator() {
+            return new IndexSpliterator<>(table::getOriginal, 0, table.size(), Spliterator.NONNULL);
+        }
+    }
+
+    private class NamespaceView extends AbstractMap<Mapping, Mapping> {
+        private final String namespace;
+
+        private NamespaceView(String namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public Mapping get(Object key) {
+            if(!(key instanceof Mapping)) {
+                return null;
+            }
+            int row = table.indexOf((Mapping) key);
+            return row == -1 ? null : toMapping(table.getOriginal(row), getName(namespace, row));
+        }
 
-            List<String> lines = firstNamespaceMappings.entrySet().parallelStream()
-                    .map(pair -> {
-                        StringBuilder lineBuilder = new StringBuilder();
-                        Mapping from = pair.getKey();
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<Mapping, Mapping>> entrySet() {
+            return new AbstractSet<Entry<Mapping, Mapping>>() {
+                @Override
+                public Iterator<Entry<Mapping, Mapping>> iterator() {
+                    return streamMappings(namespace).iterator();
+                }
 
-                        lineBuilder.append(from.getType().name());
-                        if (from.getClassName() != null) {
-                            lineBuilder.append("\t").append(from.getClassName());
+                @Override
+                public int size() {
+                    int size = 0;
+                    for(int row = 0; row < table.size(); row++) {
+                        if(getName(namespace, row) != null) {
+                            size++;
                         }
-                        if (from.getDescriptor() != null) {
-                            lineBuilder.append("\t").append(from.getDescriptor());
+                    }
+                    return size;
+                }
+
+                @Override
+                public Spliterator<Entry<Mapping, Mapping>> spliterator() {
+                    return streamMappings(namespace).spliterator();
+                }
+            };
+        }
+    }
+
+    private class NamespacesView extends AbstractMap<String, Map<Mapping, Mapping>> {
+        @Override
+        public Map<Mapping, Mapping> get(Object key) {
+            return containsKey(key) ? new NamespaceView((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && table.hasColumn((String) key);
+        }
+
+        @Override
+        public Set<Entry<String, Map<Mapping, Mapping>>> entrySet() {
+            return new AbstractSet<Entry<String, Map<Mapping, Mapping>>>() {
+                @Override
+                public Iterator<Entry<String, Map<Mapping, Mapping>>> iterator() {
+                    Iterator<String> namespaces = table.getColumnNames().iterator();
+                    return new Iterator<Entry<String, Map<Mapping, Mapping>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return namespaces.hasNext();
                         }
-                        lineBuilder.append("\t").append(from.getName());
-
-                        for (String namespace : namespaceKeys) {
-                            Mapping to = getMapping(namespace, from);
-                            if (to == null) {
-                                System.out.println("Missing mapping for " + from + " in " + namespace);
-                                continue;
-//                                throw new IllegalStateException("Missing mapping for " + from + " in " + namespace);
-                            }
-                            lineBuilder.append("\t").append(to.getName());
+
+                        @Override
+                        public Entry<String, Map<Mapping, Mapping>> next() {
+                            String namespace = namespaces.next();
+                            return new SimpleImmutableEntry<>(namespace, new NamespaceView(namespace));
                         }
-                        lineBuilder.append("\n");
-                        return lineBuilder.toString();
-                    })
-                    .collect(Collectors.toList());
+                    };
+                }
 
-            // Write all lines to the writer
-            writer.write(String.join("", lines));
-        } catch (IOException e) {
-            e.printStackTrace();
+                @Override
+                public int size() {
+                    return table.getColumnNames().size();
+                }
+            };
+        }
+    }
+
+    private static Mapping toMapping(Mapping original, String name) {
+        if(name == null) {
+            return null;
         }
+        return new Mapping(original.getType(), name, original.getClassName(), original.getDescriptor());
     }
 }
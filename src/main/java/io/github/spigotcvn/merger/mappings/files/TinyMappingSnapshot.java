@@ -0,0 +1,146 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.storage.MappingTable;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves and loads a {@link TinyMappingFile} in a binary format that can be loaded without parsing any text.
+ * <p>
+ * After the shared header and string pool (see {@link SnapshotFormat}) follow the amount of namespaces,
+ * the original namespace and the other namespaces. Then come all original mappings as their type and the ids of
+ * their name, class name and descriptor, and finally one column per namespace with the id of the name
+ * every original mapping has in it.
+ */
+public class TinyMappingSnapshot implements BufferLoadable, Saveable {
+    private final TinyMappingFile mappings;
+
+    public TinyMappingSnapshot() {
+        this(new TinyMappingFile());
+    }
+
+    /**
+     * @param mappings The mappings that will be saved, or loaded into
+     */
+    public TinyMappingSnapshot(TinyMappingFile mappings) {
+        if(mappings == null) {
+            throw new IllegalArgumentException("Mappings cannot be null");
+        }
+        this.mappings = mappings;
+    }
+
+    public TinyMappingFile getMappings() {
+        return mappings;
+    }
+
+    @Override
+    public void loadFromStream(InputStream is) throws IOException {
+        loadFromBuffer(SnapshotFormat.readFully(is));
+    }
+
+    @Override
+    public void loadFromBuffer(ByteBuffer buffer) throws InvalidMappingFormatException {
+        try {
+            load(buffer.duplicate());
+        } catch(BufferUnderflowException e) {
+            throw new InvalidMappingFormatException("Snapshot is truncated");
+        }
+    }
+
+    private void load(ByteBuffer buffer) throws InvalidMappingFormatException {
+        SnapshotFormat.readHeader(buffer, SnapshotFormat.KIND_TINY);
+        int stringCount = buffer.getInt();
+        int rows = buffer.getInt();
+        int namespaceCount = buffer.getInt();
+        if(rows < 0 || namespaceCount < 0) {
+            throw new InvalidMappingFormatException("Invalid snapshot header");
+        }
+        String[] pool = SnapshotFormat.readPool(buffer, stringCount, mappings.getSymbolTable());
+
+        mappings.clear();
+        mappings.setOriginalNamespaceName(SnapshotFormat.string(pool, buffer.getInt()));
+        List<String> namespaces = new ArrayList<>(namespaceCount);
+        for(int i = 0; i < namespaceCount; i++) {
+            String namespace = SnapshotFormat.string(pool, buffer.getInt());
+            mappings.addNamespace(namespace);
+            namespaces.add(namespace);
+        }
+
+        MappingTable table = mappings.getTable();
+        table.ensureCapacity(rows);
+        for(int row = 0; row < rows; row++) {
+            Mapping.Type type = SnapshotFormat.type(buffer.get());
+            String name = SnapshotFormat.string(pool, buffer.getInt());
+            String className = SnapshotFormat.string(pool, buffer.getInt());
+            String descriptor = SnapshotFormat.string(pool, buffer.getInt());
+            if(name == null) {
+                throw new InvalidMappingFormatException("Mapping without a name in row " + row);
+            }
+            if(table.addRow(new Mapping(type, name, className, descriptor)) != row) {
+                throw new InvalidMappingFormatException("Duplicate mapping in row " + row);
+            }
+        }
+
+        String[] names = new String[rows];
+        for(String namespace : namespaces) {
+            for(int row = 0; row < rows; row++) {
+                names[row] = SnapshotFormat.string(pool, buffer.getInt());
+            }
+            table.setNames(namespace, names);
+        }
+    }
+
+    @Override
+    public void saveToStream(OutputStream os) {
+        MappingTable table = mappings.getTable();
+        List<String> namespaces = new ArrayList<>(mappings.getNamespaceNames());
+
+        SnapshotFormat.PoolBuilder pool = new SnapshotFormat.PoolBuilder();
+        pool.add(mappings.getOriginalNamespaceName());
+        namespaces.forEach(pool::add);
+        for(int row = 0; row < table.size(); row++) {
+            Mapping original = table.getOriginal(row);
+            pool.add(original.getName());
+            pool.add(original.getClassName());
+            pool.add(original.getDescriptor());
+        }
+        for(String namespace : namespaces) {
+            for(int row = 0; row < table.size(); row++) {
+                pool.add(table.getName(namespace, row));
+            }
+        }
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1024 * 1024))) {
+            SnapshotFormat.writeHeader(out, SnapshotFormat.KIND_TINY);
+            out.writeInt(pool.size());
+            out.writeInt(table.size());
+            out.writeInt(namespaces.size());
+            pool.write(out);
+
+            out.writeInt(pool.id(mappings.getOriginalNamespaceName()));
+            for(String namespace : namespaces) {
+                out.writeInt(pool.id(namespace));
+            }
+            for(int row = 0; row < table.size(); row++) {
+                Mapping original = table.getOriginal(row);
+                out.writeByte(original.getType().ordinal());
+                out.writeInt(pool.id(original.getName()));
+                out.writeInt(pool.id(original.getClassName()));
+                out.writeInt(pool.id(original.getDescriptor()));
+            }
+            for(String namespace : namespaces) {
+                for(int row = 0; row < table.size(); row++) {
+                    out.writeInt(pool.id(table.getName(namespace, row)));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to save snapshot", e);
+        }
+    }
+}
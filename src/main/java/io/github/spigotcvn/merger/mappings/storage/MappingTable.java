@@ -0,0 +1,408 @@
+package io.github.spigotcvn.merger.mappings.storage;
+
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Column based storage for mappings with multiple namespaces.
+ * <p>
+ * Every original mapping is stored exactly once as a row, the row id is its position in the table.
+ * Every namespace is a column which only stores the name the mapping has in that namespace, indexed by row id.
+ * The class name and descriptor of a mapping are always the ones of the original mapping.
+ * <p>
+ * Reading from multiple threads at once is safe, writing is not.
+ */
+public class MappingTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Mapping[] originals = new Mapping[INITIAL_CAPACITY];
+    private int size;
+    private final Map<String, NameColumn> columns = new LinkedHashMap<>();
+
+    private final SlotIndex<Mapping> originalIndex = new SlotIndex<Mapping>() {
+        @Override
+        protected int hashRow(int row) {
+            return originals[row].hashCode();
+        }
+
+        @Override
+        protected boolean matches(int row, Mapping key) {
+            return originals[row].equals(key);
+        }
+
+        @Override
+        protected boolean sameKey(int row, int otherRow) {
+            return originals[row].equals(originals[otherRow]);
+        }
+    };
+    private volatile boolean originalIndexDirty;
+    private int modificationCount;
+
+    /**
+     * @return The amount of rows in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row The id of the row
+     * @return The original mapping stored in the row
+     */
+    public Mapping getOriginal(int row) {
+        checkRow(row);
+        return originals[row];
+    }
+
+    /**
+     * Looks up the row of an original mapping.
+     * @param original The original mapping
+     * @return The id of the row or -1 if the table doesn't contain the mapping
+     */
+    public int indexOf(Mapping original) {
+        ensureOriginalIndex();
+        return originalIndex.find(original);
+    }
+
+    /**
+     * Adds a row for the original mapping, if the table doesn't contain it yet.
+     * @param original The original mapping
+     * @return The id of the row the mapping is stored in
+     */
+    public int addRow(Mapping original) {
+        if(original == null) {
+            throw new IllegalArgumentException("Mapping cannot be null");
+        }
+
+        int row = indexOf(original);
+        if(row != -1) {
+            return row;
+        }
+
+        if(size == originals.length) {
+            grow(size * 2);
+        }
+        row = size++;
+        originals[row] = original;
+        originalIndex.insert(row);
+        modificationCount++;
+        return row;
+    }
+
+    /**
+     * Replaces the original mapping of a row, keeping the names the row has in every namespace.
+     * @param row The id of the row
+     * @param original The new original mapping
+     */
+    public void setOriginal(int row, Mapping original) {
+        checkRow(row);
+        if(original == null) {
+            throw new IllegalArgumentException("Mapping cannot be null");
+        }
+        originals[row] = original;
+        originalIndexDirty = true;
+        columns.values().forEach(NameColumn::invalidate);
+        modificationCount++;
+    }
+
+    /**
+     * Replaces the original mappings of all rows at once, keeping the names every row has in every namespace.
+     * @param originals The new original mappings, indexed by row id
+     */
+    public void setOriginals(Mapping[] originals) {
+        if(originals.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " mappings, got " + originals.length);
+        }
+        for(Mapping original : originals) {
+            if(original == null) {
+                throw new IllegalArgumentException("Mapping cannot be null");
+            }
+        }
+        System.arraycopy(originals, 0, this.originals, 0, size);
+        originalIndexDirty = true;
+        columns.values().forEach(NameColumn::invalidate);
+        modificationCount++;
+    }
+
+    /**
+     * Makes sure the table can hold the given amount of rows without growing.
+     * @param rows The amount of rows
+     */
+    public void ensureCapacity(int rows) {
+        if(rows > originals.length) {
+            grow(rows);
+        }
+    }
+
+    public boolean hasColumn(String column) {
+        return columns.containsKey(column);
+    }
+
+    /**
+     * @return The names of all columns in the order they were added in
+     */
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Adds an empty column to the end of the table.
+     * @param column The name of the column
+     */
+    public void addColumn(String column) {
+        if(column == null || columns.containsKey(column)) {
+            throw new IllegalArgumentException("Invalid column: " + column);
+        }
+        columns.put(column, new NameColumn(originals.length));
+        modificationCount++;
+    }
+
+    public void removeColumn(String column) {
+        if(columns.remove(column) == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        modificationCount++;
+    }
+
+    /**
+     * @param column The name of the column
+     * @param row The id of the row
+     * @return The name of the row in the column or null if the row has no name in it
+     */
+    public String getName(String column, int row) {
+        checkRow(row);
+        return getColumn(column).names[row];
+    }
+
+    /**
+     * @param column The name of the column
+     * @param row The id of the row
+     * @param name The name of the row in the column
+     */
+    public void setName(String column, int row, String name) {
+        checkRow(row);
+        NameColumn nameColumn = getColumn(column);
+        nameColumn.names[row] = name;
+        nameColumn.invalidate();
+        modificationCount++;
+    }
+
+    /**
+     * Replaces all names of a column at once.
+     * @param column The name of the column
+     * @param names The new names, indexed by row id
+     */
+    public void setNames(String column, String[] names) {
+        if(names.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " names, got " + names.length);
+        }
+        NameColumn nameColumn = getColumn(column);
+        System.arraycopy(names, 0, nameColumn.names, 0, size);
+        nameColumn.invalidate();
+        modificationCount++;
+    }
+
+    /**
+     * Looks up the row of a mapping in a column.
+     * The class name and descriptor of the mapping have to be the ones of the original mapping.
+     * @param column The name of the column
+     * @param mapping The mapping like it is named in the column
+     * @return The id of the row or -1 if the column doesn't contain the mapping
+     */
+    public int indexOf(String column, Mapping mapping) {
+        ensureOriginalIndex();
+        return getColumn(column).index().find(mapping);
+    }
+
+    /**
+     * Removes all rows from the table, the columns are kept.
+     */
+    public void clear() {
+        originals = new Mapping[INITIAL_CAPACITY];
+        size = 0;
+        columns.replaceAll((name, column) -> new NameColumn(INITIAL_CAPACITY));
+        originalIndex.rebuild(0);
+        originalIndexDirty = false;
+        modificationCount++;
+    }
+
+    /**
+     * Merges rows with equal original mappings and removes rows that have no name in any column.
+     * Rows with equal original mappings are merged into the first of them, if multiple of them have a name
+     * in the same column, the name of the last one is kept. The rows are ordered by the first column they have
+     * a name in, and by their old order within that column.
+     * <p>
+     * If every row has a name in the first column and no original mapping is stored twice, nothing changes.
+     */
+    public void compact() {
+        ensureOriginalIndex();
+        NameColumn[] nameColumns = columns.values().toArray(new NameColumn[0]);
+        if(nameColumns.length == 0) {
+            clear();
+            return;
+        }
+        String[] firstNames = nameColumns[0].names;
+        ExecutionContext context = ExecutionContext.current();
+        boolean compact = context.call(() -> context.stream(IntStream.range(0, size))
+                .allMatch(row -> firstNames[row] != null && originalIndex.find(originals[row]) == row));
+        if(compact) {
+            return;
+        }
+
+        // the new position of the first row of every original mapping, -1 if it isn't kept
+        int[] newRows = new int[size];
+        Arrays.fill(newRows, -1);
+        int[] order = new int[size];
+        int newSize = 0;
+        String[][] newNames = new String[nameColumns.length][size];
+        for(int column = 0; column < nameColumns.length; column++) {
+            String[] names = nameColumns[column].names;
+            for(int row = 0; row < size; row++) {
+                if(names[row] == null) {
+                    continue;
+                }
+                int first = originalIndex.find(originals[row]);
+                if(newRows[first] == -1) {
+                    newRows[first] = newSize;
+                    order[newSize++] = first;
+                }
+                newNames[column][newRows[first]] = names[row];
+            }
+        }
+
+        int capacity = Math.max(INITIAL_CAPACITY, newSize);
+        Mapping[] newOriginals = new Mapping[capacity];
+        for(int row = 0; row < newSize; row++) {
+            newOriginals[row] = originals[order[row]];
+        }
+        originals = newOriginals;
+        size = newSize;
+        for(int column = 0; column < nameColumns.length; column++) {
+            nameColumns[column].names = Arrays.copyOf(newNames[column], capacity);
+            nameColumns[column].invalidate();
+        }
+        originalIndex.rebuild(size);
+        originalIndexDirty = false;
+        modificationCount++;
+    }
+
+    /**
+     * Copies the table. Only the arrays are copied, the mappings and names in them are shared, which is fine as they can't change.
+     * The copy starts with the same modification count, so data derived from this table is also valid for the copy.
+     * @return A copy of the table that can be changed without changing this one
+     */
+    public MappingTable copy() {
+        MappingTable copy = new MappingTable();
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        copy.originals = Arrays.copyOf(originals, capacity);
+        copy.size = size;
+        columns.forEach((name, column) -> {
+            NameColumn copied = copy.new NameColumn(0);
+            copied.names = Arrays.copyOf(column.names, capacity);
+            copy.columns.put(name, copied);
+        });
+        copy.originalIndexDirty = true;
+        copy.modificationCount = modificationCount;
+        return copy;
+    }
+
+    /**
+     * Counts every change made to the table, so data derived from it can tell whether it is still up to date.
+     * @return The amount of changes made to the table so far
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    private NameColumn getColumn(String column) {
+        NameColumn nameColumn = columns.get(column);
+        if(nameColumn == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return nameColumn;
+    }
+
+    private void ensureOriginalIndex() {
+        if(originalIndexDirty) {
+            synchronized(originalIndex) {
+                if(originalIndexDirty) {
+                    originalIndex.rebuild(size);
+                    originalIndexDirty = false;
+                }
+            }
+        }
+    }
+
+    private void grow(int capacity) {
+        originals = Arrays.copyOf(originals, capacity);
+        columns.values().forEach(column -> column.names = Arrays.copyOf(column.names, capacity));
+    }
+
+    private void checkRow(int row) {
+        if(row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    private class NameColumn {
+        private String[] names;
+        // reverse index, only built once a reverse lookup happens
+        private volatile SlotIndex<Mapping> index;
+
+        private NameColumn(int capacity) {
+            this.names = new String[capacity];
+        }
+
+        private void invalidate() {
+            index = null;
+        }
+
+        private SlotIndex<Mapping> index() {
+            SlotIndex<Mapping> current = index;
+            if(current != null) {
+                return current;
+            }
+            synchronized(this) {
+                if(index == null) {
+                    SlotIndex<Mapping> built = new SlotIndex<Mapping>() {
+                        @Override
+                        protected int hashRow(int row) {
+                            Mapping original = originals[row];
+                            return Mapping.hash(original.getType(), names[row], original.getClassName(), original.getDescriptor());
+                        }
+
+                        @Override
+                        protected boolean matches(int row, Mapping key) {
+                            Mapping original = originals[row];
+                            return original.getType() == key.getType()
+                                    && key.getName().equals(names[row])
+                                    && Objects.equals(original.getClassName(), key.getClassName())
+                                    && Objects.equals(original.getDescriptor(), key.getDescriptor());
+                        }
+
+                        @Override
+                        protected boolean sameKey(int row, int otherRow) {
+                            Mapping original = originals[row];
+                            Mapping other = originals[otherRow];
+                            return original.getType() == other.getType()
+                                    && names[row].equals(names[otherRow])
+                                    && Objects.equals(original.getClassName(), other.getClassName())
+                                    && Objects.equals(original.getDescriptor(), other.getDescriptor());
+                        }
+
+                        @Override
+                        protected boolean isIndexed(int row) {
+                            return names[row] != null;
+                        }
+                    };
+                    built.rebuild(size);
+                    index = built;
+                }
+                return index;
+            }
+        }
+    }
+}
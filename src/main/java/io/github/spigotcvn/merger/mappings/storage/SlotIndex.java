@@ -0,0 +1,181 @@
+package io.github.spigotcvn.merger.mappings.storage;
+
+/**
+ * An open addressing hash index from a key to the id of the row it is stored in.
+ * The index only stores row ids, the keys themselves are read from wherever the rows are stored through
+ * {@link #hashRow(int)} and {@link #matches(int, Object)}, so lookups don't allocate anything.
+ * <p>
+ * If multiple rows have the same key, only the first one is indexed.
+ * Reading from multiple threads at once is safe, writing is not.
+ * @param <K> The type of the keys that are looked up
+ */
+public abstract class SlotIndex<K> {
+    private static final int MIN_CAPACITY = 16;
+
+    // stores row + 1, 0 marks an empty slot
+    private int[] slots;
+    private int count;
+
+    protected SlotIndex() {
+        this(0);
+    }
+
+    /**
+     * @param expected The amount of rows the index is sized for, it grows past that if needed
+     */
+    protected SlotIndex(int expected) {
+        this.slots = new int[capacityFor(expected)];
+    }
+
+    /**
+     * @return The hash of the key stored in the given row, has to be the same as {@link #hashKey(Object)} of that key
+     */
+    protected abstract int hashRow(int row);
+
+    /**
+     * @return Whether the key stored in the given row is equal to the given key
+     */
+    protected abstract boolean matches(int row, K key);
+
+    /**
+     * @return Whether the keys stored in both rows are equal
+     */
+    protected abstract boolean sameKey(int row, int otherRow);
+
+    /**
+     * @return The hash of a key, {@link Object#hashCode()} by default
+     */
+    protected int hashKey(K key) {
+        return key.hashCode();
+    }
+
+    /**
+     * @return Whether the row should be indexed at all
+     */
+    protected boolean isIndexed(int row) {
+        return true;
+    }
+
+    /**
+     * Looks up the row of a key.
+     * @param key The key to look up
+     * @return The id of the row or -1 if the key isn't indexed
+     */
+    public int find(K key) {
+        for(int i = firstSlot(hashKey(key)); ; i = nextSlot(i)) {
+            int row = rowAt(i);
+            if(row == -1 || matches(row, key)) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Adds a row to the index, unless a row with the same key is already indexed.
+     * @param row The row to add
+     * @return The row indexed for the key of the row, which is the row itself if it was added,
+     * or -1 if the row shouldn't be indexed at all
+     */
+    public int insert(int row) {
+        if(!isIndexed(row)) {
+            return -1;
+        }
+        if((count + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        int indexed = place(row);
+        if(indexed == row) {
+            count++;
+        }
+        return indexed;
+    }
+
+    /**
+     * Throws away the index and indexes the rows 0 until size again.
+     * @param size The amount of rows
+     */
+    public void rebuild(int size) {
+        slots = new int[capacityFor(size)];
+        count = 0;
+        for(int row = 0; row < size; row++) {
+            if(isIndexed(row) && place(row) == row) {
+                count++;
+            }
+        }
+    }
+
+    /**
+     * @return The amount of indexed rows
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Starts probing for a key that can't be passed to {@link #find(Object)} as a single object,
+     * like a part of a string. Probing ends at the first slot without a row.
+     * @param hash The hash of the key
+     * @return The first slot to check
+     */
+    protected final int firstSlot(int hash) {
+        return mix(hash) & (slots.length - 1);
+    }
+
+    /**
+     * @return The slot to check after the given one
+     */
+    protected final int nextSlot(int slot) {
+        return (slot + 1) & (slots.length - 1);
+    }
+
+    /**
+     * @return The row stored in the slot, or -1 if the slot is empty
+     */
+    protected final int rowAt(int slot) {
+        return slots[slot] - 1;
+    }
+
+    private void resize(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        for(int slot : old) {
+            if(slot == 0) {
+                continue;
+            }
+            int i = firstSlot(hashRow(slot - 1));
+            while(slots[i] != 0) {
+                i = nextSlot(i);
+            }
+            slots[i] = slot;
+        }
+    }
+
+    /**
+     * @return The row that is indexed for the key of the row
+     */
+    private int place(int row) {
+        for(int i = firstSlot(hashRow(row)); ; i = nextSlot(i)) {
+            int slot = slots[i];
+            if(slot == 0) {
+                slots[i] = row + 1;
+                return row;
+            }
+            if(sameKey(slot - 1, row)) {
+                return slot - 1;
+            }
+        }
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while(capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -52,6 +52,15 @@ public class Mapping {
 
     @Override
     public int hashCode() {
+        return hash(type, name, className, descriptor);
+    }
+
+    /**
+     * Computes the hash code a mapping with the given parts would have.
+     * This allows looking up mappings in hash based structures without creating a mapping first.
+     * @see #hashCode()
+     */
+    public static int hash(@NotNull Type type, @NotNull String name, @Nullable String className, @Nullable String descriptor) {
         int hash = 17;
         hash = 31 * hash + type.hashCode();
         hash = 37 * hash + name.hashCode();
@@ -69,6 +78,20 @@ public class Mapping {
         return type == mapping.type && name.equals(mapping.name) && Objects.equals(className, mapping.className) && Objects.equals(descriptor, mapping.descriptor);
     }
 
+    /**
+     * @return The mapping in a compact form, like {@code a}, {@code a.b:I} or {@code a.c(I)V}
+     */
+    public String toCompactString() {
+        if (type == Type.CLASS) {
+            return name;
+        }
+        String member = className + "." + name;
+        if (descriptor == null) {
+            return member;
+        }
+        return type == Type.FIELD ? member + ":" + descriptor : member + descriptor;
+    }
+
     @Override
     public String toString() {
         return "Mapping{" +
@@ -0,0 +1,33 @@
+package io.github.spigotcvn.merger.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named count of events, like lookups that missed. Cheap to increment from many threads at once.
+ * Counters are never reset, phases report how much they went up while the phase ran.
+ * @see Metrics#counter(String)
+ */
+public final class Counter {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
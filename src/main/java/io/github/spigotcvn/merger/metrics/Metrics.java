@@ -0,0 +1,145 @@
+package io.github.spigotcvn.merger.metrics;
+
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the phases the merger goes through: wall time, processed entries, allocated bytes and counters like lookup misses.
+ * <p>
+ * Every phase is a JFR event, which JFR records like any other event when it is enabled.
+ * Besides that the results of all phases can be recorded in memory between {@link #startRecording()}
+ * and {@link #stopRecording()}, to be printed or written as a report with {@link MetricsReport}.
+ * Recording is global, only one recording can run at a time.
+ */
+public final class Metrics {
+    static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final List<PhaseResult> results = new ArrayList<>();
+    private static volatile boolean recording;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param name The name of the phase
+     * @return The started phase, close it once the work is done
+     */
+    public static Phase start(String name) {
+        return start(name, null);
+    }
+
+    /**
+     * @param name The name of the phase
+     * @param detail What the phase works on, like a file name, or null
+     * @return The started phase, close it once the work is done
+     */
+    public static Phase start(String name, String detail) {
+        if(name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        return new Phase(name, detail, recording);
+    }
+
+    /**
+     * @param name The name of the counter
+     * @return The counter with the name, it is created if it doesn't exist yet
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Starts recording the results of all phases started from now on, earlier results are thrown away.
+     */
+    public static synchronized void startRecording() {
+        results.clear();
+        recording = true;
+    }
+
+    /**
+     * Stops recording. Phases that are still running at this point aren't recorded.
+     * @return The results of all recorded phases, ordered by the time they started at
+     */
+    public static synchronized List<PhaseResult> stopRecording() {
+        recording = false;
+        List<PhaseResult> recorded = new ArrayList<>(results);
+        results.clear();
+        recorded.sort(Comparator.comparingLong(PhaseResult::getStartNanos));
+        return recorded;
+    }
+
+    static synchronized void record(PhaseResult result) {
+        if(recording) {
+            results.add(result);
+        }
+    }
+
+    static Map<String, Long> counterValues() {
+        Map<String, Long> values = new HashMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        return values;
+    }
+
+    /**
+     * @param context The context whose threads are measured besides the calling thread
+     * @return The bytes allocated so far by the calling thread and the running threads of the context, by thread id,
+     *         or null if the JVM can't measure it
+     */
+    static Map<Long, Long> allocatedBytes(ExecutionContext context) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        List<Thread> workers = context.getWorkers();
+        long[] ids = new long[workers.size() + 1];
+        ids[0] = Thread.currentThread().getId();
+        for(int i = 0; i < workers.size(); i++) {
+            ids[i + 1] = workers.get(i).getId();
+        }
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for(int i = 0; i < ids.length; i++) {
+            // -1 for threads that ended in the meantime
+            if(bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * @param start The bytes allocated per thread id at the start of a phase
+     * @param end The bytes allocated per thread id at the end of the phase
+     * @return The bytes allocated in between, or -1 if either is unknown or a thread ended in between,
+     *         because what it allocated is lost with it
+     */
+    static long allocatedBetween(Map<Long, Long> start, Map<Long, Long> end) {
+        if(start == null || end == null || !end.keySet().containsAll(start.keySet())) {
+            return -1;
+        }
+        long total = 0;
+        for(Map.Entry<Long, Long> thread : end.entrySet()) {
+            // threads that started during the phase allocated everything in it
+            total += Math.max(0, thread.getValue() - start.getOrDefault(thread.getKey(), 0L));
+        }
+        return total;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
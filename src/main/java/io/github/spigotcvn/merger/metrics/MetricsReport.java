@@ -0,0 +1,77 @@
+package io.github.spigotcvn.merger.metrics;
+
+import io.github.spigotcvn.merger.util.Json;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats recorded phases, as readable summary or as JSON report for tools.
+ */
+public final class MetricsReport {
+    private MetricsReport() {
+    }
+
+    /**
+     * Prints one line per phase.
+     * @param results The recorded phases
+     * @param out The stream to print to
+     */
+    public static void print(List<PhaseResult> results, PrintStream out) {
+        for(PhaseResult result : results) {
+            StringBuilder line = new StringBuilder(result.getName());
+            if(result.getDetail() != null) {
+                line.append(' ').append(result.getDetail());
+            }
+            line.append(" took ").append(result.getWallTimeNanos() / 1_000_000).append("ms");
+            if(result.getEntries() >= 0) {
+                line.append(", ").append(result.getEntries()).append(" entries (")
+                        .append((long) result.getEntriesPerSecond()).append("/s)");
+            }
+            if(result.getAllocatedBytes() >= 0) {
+                line.append(", ").append(result.getAllocatedBytes() / 1024 / 1024).append("MB allocated");
+            }
+            result.getCounters().forEach((counter, value) -> line.append(", ").append(counter).append('=').append(value));
+            out.println(line);
+        }
+    }
+
+    /**
+     * Writes the phases as JSON object with a phases array, every phase has its name, detail, wallTimeMs,
+     * entries, entriesPerSecond, allocatedBytes and counters. Values that weren't measured are -1.
+     * @param results The recorded phases
+     * @param file The file to write to
+     */
+    public static void writeJson(List<PhaseResult> results, File file) {
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write(toJson(results));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String toJson(List<PhaseResult> results) {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": [");
+        for(int i = 0; i < results.size(); i++) {
+            PhaseResult result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(Json.quote(result.getName()))
+                    .append(", \"detail\": ").append(result.getDetail() == null ? "null" : Json.quote(result.getDetail()))
+                    .append(", \"wallTimeMs\": ").append(String.format(Locale.ROOT, "%.3f", result.getWallTimeNanos() / 1e6))
+                    .append(", \"entries\": ").append(result.getEntries())
+                    .append(", \"entriesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", result.getEntriesPerSecond()))
+                    .append(", \"allocatedBytes\": ").append(result.getAllocatedBytes())
+                    .append(", \"counters\": {");
+            boolean first = true;
+            for(Map.Entry<String, Long> counter : result.getCounters().entrySet()) {
+                json.append(first ? "" : ", ").append(Json.quote(counter.getKey())).append(": ").append(counter.getValue());
+                first = false;
+            }
+            json.append("}}");
+        }
+        return json.append(results.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+}
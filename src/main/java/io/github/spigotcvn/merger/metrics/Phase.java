@@ -0,0 +1,95 @@
+package io.github.spigotcvn.merger.metrics;
+
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A running phase of work, like loading a file or merging mappings. Closing it ends it.
+ * <p>
+ * Nothing is measured unless metrics are being recorded or the JFR event of phases is enabled,
+ * so phases can be used everywhere without slowing anything down.
+ * <p>
+ * Allocated bytes are measured on the thread that started the phase and the threads of its {@link ExecutionContext}.
+ * Phases running at the same time in the same context count each other's allocations, and so do unrelated tasks
+ * running on the common pool.
+ * @see Metrics#start(String, String)
+ */
+public final class Phase implements AutoCloseable {
+    private final String name;
+    private final String detail;
+    private final boolean recorded;
+    private final PhaseEvent event;
+    private final long startNanos;
+    private final ExecutionContext context;
+    private final Map<Long, Long> startAllocatedBytes;
+    private final Map<String, Long> startCounters;
+    private long entries = -1;
+    private boolean closed;
+
+    Phase(String name, String detail, boolean recorded) {
+        this.name = name;
+        this.detail = detail;
+        this.recorded = recorded;
+        this.event = Metrics.JFR_AVAILABLE ? createEvent() : null;
+
+        boolean measured = recorded || event != null;
+        startCounters = measured ? Metrics.counterValues() : null;
+        context = ExecutionContext.current();
+        startAllocatedBytes = measured ? Metrics.allocatedBytes(context) : null;
+        startNanos = System.nanoTime();
+    }
+
+    private static PhaseEvent createEvent() {
+        PhaseEvent event = new PhaseEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param entries The amount of mappings the phase processed
+     */
+    public void setEntries(long entries) {
+        this.entries = entries;
+    }
+
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        if(!recorded && event == null) {
+            return;
+        }
+
+        long wallTimeNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = Metrics.allocatedBetween(startAllocatedBytes, Metrics.allocatedBytes(context));
+        Map<String, Long> counters = new LinkedHashMap<>();
+        Metrics.counterValues().forEach((counter, value) -> {
+            long difference = value - startCounters.getOrDefault(counter, 0L);
+            if(difference != 0) {
+                counters.put(counter, difference);
+            }
+        });
+
+        if(event != null) {
+            event.end();
+            if(event.shouldCommit()) {
+                event.name = name;
+                event.detail = detail;
+                event.entries = entries;
+                event.allocated = allocatedBytes;
+                event.counters = counters.toString();
+                event.commit();
+            }
+        }
+        if(recorded) {
+            Metrics.record(new PhaseResult(name, detail, startNanos, wallTimeNanos, entries, allocatedBytes, counters));
+        }
+    }
+}
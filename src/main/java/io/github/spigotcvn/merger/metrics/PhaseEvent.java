@@ -0,0 +1,29 @@
+package io.github.spigotcvn.merger.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * The JFR event every {@link Phase} is recorded as, the duration of the event is the wall time of the phase.
+ * Only loaded if the JVM has JFR.
+ */
+@Name("io.github.spigotcvn.merger.Phase")
+@Label("Mapping Merger Phase")
+@Category("Mapping Merger")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Detail")
+    String detail;
+
+    @Label("Entries")
+    long entries;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Counters")
+    String counters;
+}
@@ -0,0 +1,81 @@
+package io.github.spigotcvn.merger.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The measurements of a finished {@link Phase}.
+ */
+public final class PhaseResult {
+    private final String name;
+    private final String detail;
+    private final long startNanos;
+    private final long wallTimeNanos;
+    private final long entries;
+    private final long allocatedBytes;
+    private final Map<String, Long> counters;
+
+    PhaseResult(String name, String detail, long startNanos, long wallTimeNanos, long entries, long allocatedBytes, Map<String, Long> counters) {
+        this.name = name;
+        this.detail = detail;
+        this.startNanos = startNanos;
+        this.wallTimeNanos = wallTimeNanos;
+        this.entries = entries;
+        this.allocatedBytes = allocatedBytes;
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return What the phase worked on, like a file name, or null
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return The value of {@link System#nanoTime()} when the phase started
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return The amount of mappings the phase processed, or -1 if it didn't report it
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The amount of entries processed per second, or -1 if the phase didn't report its entries
+     */
+    public double getEntriesPerSecond() {
+        if(entries < 0) {
+            return -1;
+        }
+        return entries / Math.max(wallTimeNanos / 1e9, 1e-9);
+    }
+
+    /**
+     * @return The amount of bytes allocated by the thread of the phase and the threads of its context while the phase ran,
+     *         or -1 if it isn't known, like when a measured thread ended while the phase ran
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return How much every counter that changed went up while the phase ran
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+}
@@ -0,0 +1,221 @@
+package io.github.spigotcvn.merger.remap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.storage.SlotIndex;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.util.Arrays;
+
+/**
+ * Renames the classes referenced by class names and descriptors.
+ * <p>
+ * Class names are looked up directly on the characters of the descriptor, so looking up a class doesn't allocate anything.
+ * Mapping files repeat the same descriptors a lot, so already remapped descriptors are cached.
+ * If no class in a descriptor is renamed, the descriptor itself is returned.
+ * <p>
+ * Classes have to be added before the remapper is used, remapping is safe from multiple threads.
+ */
+public class DescriptorRemapper {
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+
+    // the classes by the order they were added in
+    private String[] names = new String[16];
+    private String[] newNames = new String[16];
+    private int count;
+    private final ClassIndex index = new ClassIndex();
+    private final Cache<String, String> cache;
+
+    public DescriptorRemapper() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The maximum amount of remapped descriptors to remember
+     */
+    public DescriptorRemapper(int cacheSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
+    /**
+     * Creates a remapper that renames classes from their original name to the name they have in a namespace.
+     * Classes that aren't mapped in the namespace keep their original name.
+     * @param tiny The tiny file
+     * @param namespace The namespace to rename classes to
+     * @return The remapper
+     */
+    public static DescriptorRemapper forNamespace(TinyMappingFile tiny, String namespace) {
+        DescriptorRemapper remapper = new DescriptorRemapper();
+        if(namespace.equals(tiny.getOriginalNamespaceName())) {
+            return remapper;
+        }
+
+        for(int row = 0; row < tiny.size(); row++) {
+            Mapping original = tiny.getOriginalMapping(row);
+            if(original.getType() != Mapping.Type.CLASS) {
+                continue;
+            }
+            String name = tiny.getName(namespace, row);
+            if(name != null) {
+                remapper.addClass(original.getName(), name);
+            }
+        }
+        return remapper;
+    }
+
+    /**
+     * Adds a class that should be renamed.
+     * If the class was already added, the first name it was added with is kept.
+     * @param from The name of the class
+     * @param to The new name of the class
+     */
+    public void addClass(String from, String to) {
+        if(from == null || to == null) {
+            throw new IllegalArgumentException("Invalid arguments: " + from + ", " + to);
+        }
+        if(from.equals(to)) {
+            return;
+        }
+
+        if(count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            newNames = Arrays.copyOf(newNames, count * 2);
+        }
+        names[count] = from;
+        newNames[count] = to;
+        if(index.insert(count) == count) {
+            count++;
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @param className The name of a class
+     * @return The new name of the class, or the name itself if the class isn't renamed
+     */
+    public String remapClassName(String className) {
+        if(className == null) {
+            return null;
+        }
+        String remapped = lookup(className, 0, className.length());
+        return remapped == null ? className : remapped;
+    }
+
+    /**
+     * Renames all classes referenced in a descriptor.
+     * @param descriptor The descriptor
+     * @return The remapped descriptor, or the descriptor itself if no class in it is renamed
+     */
+    public String remapDescriptor(String descriptor) {
+        if(descriptor == null || count == 0 || descriptor.indexOf('L') == -1) {
+            return descriptor;
+        }
+
+        String remapped = cache.getIfPresent(descriptor);
+        if(remapped == null) {
+            remapped = remap(descriptor);
+            cache.put(descriptor, remapped);
+        }
+        return remapped;
+    }
+
+    /**
+     * Renames the classes referenced in the class name and descriptor of a mapping.
+     * @param mapping The mapping
+     * @return The remapped mapping, or the mapping itself if no class in it is renamed
+     */
+    public Mapping remapReferences(Mapping mapping) {
+        String className = remapClassName(mapping.getClassName());
+        String descriptor = remapDescriptor(mapping.getDescriptor());
+        if(className == mapping.getClassName() && descriptor == mapping.getDescriptor()) {
+            return mapping;
+        }
+        return new Mapping(mapping.getType(), mapping.getName(), className, descriptor);
+    }
+
+    private String remap(String descriptor) {
+        StringBuilder newDescriptor = null;
+        // everything before this index is either copied already or unchanged
+        int copied = 0;
+        int length = descriptor.length();
+        for(int i = 0; i < length; i++) {
+            if(descriptor.charAt(i) != 'L') {
+                continue;
+            }
+            int end = descriptor.indexOf(';', i);
+            if(end == -1) {
+                break;
+            }
+
+            String remapped = lookup(descriptor, i + 1, end);
+            if(remapped != null) {
+                if(newDescriptor == null) {
+                    newDescriptor = new StringBuilder(length + 16);
+                }
+                newDescriptor.append(descriptor, copied, i + 1).append(remapped);
+                copied = end;
+            }
+            i = end;
+        }
+
+        if(newDescriptor == null) {
+            return descriptor;
+        }
+        return newDescriptor.append(descriptor, copied, length).toString();
+    }
+
+    private String lookup(String string, int start, int end) {
+        if(count == 0) {
+            return null;
+        }
+        int row = index.find(string, start, end);
+        return row == -1 ? null : newNames[row];
+    }
+
+    /**
+     * Indexes the classes by their name.
+     */
+    private class ClassIndex extends SlotIndex<String> {
+        /**
+         * @return The class named like the characters from start until end of the string, or -1 if there is none
+         */
+        int find(String string, int start, int end) {
+            // same hash as String#hashCode of the substring
+            int hash = 0;
+            for(int i = start; i < end; i++) {
+                hash = 31 * hash + string.charAt(i);
+            }
+
+            int length = end - start;
+            for(int i = firstSlot(hash); ; i = nextSlot(i)) {
+                int row = rowAt(i);
+                if(row == -1) {
+                    return -1;
+                }
+                String name = names[row];
+                if(name.length() == length && name.regionMatches(0, string, start, length)) {
+                    return row;
+                }
+            }
+        }
+
+        @Override
+        protected int hashRow(int row) {
+            return names[row].hashCode();
+        }
+
+        @Override
+        protected boolean matches(int row, String key) {
+            return names[row].equals(key);
+        }
+
+        @Override
+        protected boolean sameKey(int row, int otherRow) {
+            return names[row].equals(names[otherRow]);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.spigotcvn.merger.remap;
+
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies all rules of a package mapping to a tiny file in a single pass.
+ * <p>
+ * A rule moves every class that is directly in its package into another package,
+ * the rule ./ moves every class without a package. The rules are compiled into an index of
+ * package name to the rules that match it, so finding the rules for a class is a single lookup.
+ * As the rules are applied one after another, a class moved by a rule can be moved again
+ * by any rule that comes after it. The index keeps the order of the rules, so
+ * the result is the same as applying every rule to the whole file one by one.
+ * @see io.github.spigotcvn.merger.MappingMerger#applyPackageMapping(TinyMappingFile, CSRGMappingFile, boolean)
+ */
+public class PackageRemapper {
+    private static final int[] NO_RULES = new int[0];
+
+    private final String[] targets;
+    // package name -> ids of the rules that match it, in the order they are applied in
+    private final Map<String, int[]> rulesByPackage = new HashMap<>();
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    public PackageRemapper(CSRGMappingFile packageMapping) {
+        List<String> sources = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        packageMapping.forEach((from, to) -> {
+            if(from.getType() != Mapping.Type.CLASS || to.getType() != Mapping.Type.CLASS) {
+                return;
+            }
+            sources.add(from.getName());
+            targets.add(to.getName());
+        });
+        this.targets = targets.toArray(new String[0]);
+
+        Map<String, List<Integer>> rules = new HashMap<>();
+        for(int i = 0; i < sources.size(); i++) {
+            String source = sources.get(i);
+            if(source.isEmpty()) {
+                // classes without a package are only matched by ./
+                continue;
+            }
+            // ./ matches classes without a package, every other rule has to match the package exactly
+            String key = source.equals("./") ? "" : source;
+            rules.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+        rules.forEach((key, ids) -> rulesByPackage.put(key, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Moves a class into the package all rules together move it to.
+     * @param className The internal name of the class
+     * @return The new name of the class, or the name itself if no rule matches it
+     */
+    public String remapClassName(String className) {
+        if(className == null || rulesByPackage.isEmpty()) {
+            return className;
+        }
+        String result = resolved.get(className);
+        if(result == null) {
+            result = resolve(className);
+            resolved.put(className, result);
+        }
+        return result;
+    }
+
+    /**
+     * Applies the package mapping to the whole tiny file.
+     * The names of classes are remapped in every namespace, the original namespace
+     * including the class names and descriptors of fields and methods is only remapped if repackageOriginal is set.
+     * @param tiny The tiny file
+     * @param repackageOriginal Whether to repackage the original namespace
+     */
+    public void apply(TinyMappingFile tiny, boolean repackageOriginal) {
+        SymbolTable symbolTable = tiny.getSymbolTable();
+        int size = tiny.size();
+
+        for(String namespace : tiny.getNamespaceNames()) {
+            String[] names = new String[size];
+            ExecutionContext.current().forEachIndex(size, row -> {
+                String name = tiny.getName(namespace, row);
+                if(tiny.getOriginalMapping(row).getType() == Mapping.Type.CLASS) {
+                    name = symbolTable.intern(remapClassName(name));
+                }
+                names[row] = name;
+            });
+            tiny.setNames(namespace, names);
+        }
+
+        if(repackageOriginal) {
+            // descriptors only reference classes by their new name if the class is part of the file
+            DescriptorRemapper descriptorRemapper = new DescriptorRemapper();
+            for(int row = 0; row < size; row++) {
+                Mapping original = tiny.getOriginalMapping(row);
+                if(original.getType() == Mapping.Type.CLASS) {
+                    descriptorRemapper.addClass(original.getName(), remapClassName(original.getName()));
+                }
+            }
+
+            Mapping[] originals = new Mapping[size];
+            ExecutionContext.current().forEachIndex(size, row -> {
+                Mapping original = tiny.getOriginalMapping(row);
+                if(original.getType() == Mapping.Type.CLASS) {
+                    originals[row] = new Mapping(Mapping.Type.CLASS, symbolTable.intern(remapClassName(original.getName())));
+                } else {
+                    String className = symbolTable.intern(remapClassName(original.getClassName()));
+                    String descriptor = symbolTable.intern(descriptorRemapper.remapDescriptor(original.getDescriptor()));
+                    if(className == original.getClassName() && descriptor == original.getDescriptor()) {
+                        originals[row] = original;
+                    } else {
+                        originals[row] = new Mapping(original.getType(), original.getName(), className, descriptor);
+                    }
+                }
+            });
+            // classes that are moved onto the same name are merged
+            tiny.setOriginalMappings(originals);
+        }
+    }
+
+    private String resolve(String className) {
+        String name = className;
+        int applied = -1;
+        while(true) {
+            int lastSlashIndex = name.lastIndexOf('/') + 1;
+            int[] rules = rulesByPackage.getOrDefault(name.substring(0, lastSlashIndex), NO_RULES);
+
+            int next = -1;
+            for(int rule : rules) {
+                if(rule > applied) {
+                    next = rule;
+                    break;
+                }
+            }
+            if(next == -1) {
+                return name;
+            }
+
+            name = targets[next] + name.substring(lastSlashIndex);
+            applied = next;
+        }
+    }
+}
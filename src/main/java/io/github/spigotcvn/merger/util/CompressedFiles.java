@@ -0,0 +1,67 @@
+package io.github.spigotcvn.merger.util;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens files that may be gzip compressed.
+ * Compressed input is detected by the gzip magic number, compressed output is chosen by the ".gz" extension.
+ */
+public class CompressedFiles {
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedFiles() {
+    }
+
+    /**
+     * @param file The file to check
+     * @return Whether the file starts with the gzip magic number
+     * @throws IOException If the file can't be read
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        try(InputStream is = new FileInputStream(file)) {
+            return (is.read() | is.read() << 8) == GZIP_MAGIC;
+        }
+    }
+
+    /**
+     * @param file The file to check
+     * @return Whether data written to the file should be compressed
+     */
+    public static boolean shouldCompress(File file) {
+        return file.getName().endsWith(".gz");
+    }
+
+    /**
+     * Opens a file for reading, decompressing it while it is read if it is gzip compressed.
+     * @param file The file to read
+     * @return The stream to read the uncompressed data from
+     * @throws IOException If the file can't be opened
+     */
+    public static InputStream openInput(File file) throws IOException {
+        if(!isCompressed(file)) {
+            return new FileInputStream(file);
+        }
+        InputStream is = new FileInputStream(file);
+        try {
+            return new GZIPInputStream(is, BUFFER_SIZE);
+        } catch(IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file for writing, compressing the data in parallel if the file name ends with ".gz".
+     * @param file The file to write
+     * @return The stream to write the uncompressed data to
+     * @throws IOException If the file can't be opened
+     */
+    public static OutputStream openOutput(File file) throws IOException {
+        if(!shouldCompress(file)) {
+            return new FileOutputStream(file);
+        }
+        return new ParallelGzipOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.spigotcvn.merger.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.BaseStream;
+import java.util.stream.IntStream;
+
+/**
+ * Decides where the parallel stages of the merger run: on the common pool, on a pool of their own or sequentially.
+ * <p>
+ * Every parallel stage uses the context returned by {@link #current()}, which is the context whose
+ * {@link #run(Runnable)} or {@link #call(Supplier)} the calling thread is in, or the context whose pool the calling
+ * thread belongs to, or the default context otherwise. Threads of pools passed to {@link #of(ForkJoinPool)} only know
+ * their context within {@link #run(Runnable)} or {@link #call(Supplier)}.
+ * The default context is the common pool unless changed with {@link #setDefault(ExecutionContext)}.
+ * <pre>{@code
+ * try(ExecutionContext context = ExecutionContext.withThreads(4)) {
+ *     context.run(() -> MappingMerger.mergeTinyWithCSRG(tiny, csrg, "spigot"));
+ * }
+ * }</pre>
+ * The results of every stage are the same and in the same order no matter which context it runs in.
+ */
+public final class ExecutionContext implements AutoCloseable {
+    private static final ExecutionContext COMMON = new ExecutionContext(ForkJoinPool.commonPool(), false);
+    private static final ExecutionContext SEQUENTIAL = new ExecutionContext(null, false);
+    private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+    private static volatile ExecutionContext defaultContext = COMMON;
+
+    // null if everything runs on the calling thread
+    private final ForkJoinPool pool;
+    // whether the pool belongs to this context and is shut down when it is closed
+    private final boolean ownsPool;
+    // the running threads of the pool, only known if the pool belongs to this context
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+    private ExecutionContext(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    private ExecutionContext(int threads) {
+        // the threads of the pool know this context, so stages they start stay in the pool
+        this.pool = new ForkJoinPool(threads, pool -> new Worker(pool, this), null, false);
+        this.ownsPool = true;
+    }
+
+    /**
+     * @return The context that runs on the common fork join pool
+     */
+    public static ExecutionContext common() {
+        return COMMON;
+    }
+
+    /**
+     * @return The context that runs everything on the calling thread
+     */
+    public static ExecutionContext sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Creates a context with a pool of its own, close it to shut the pool down.
+     * @param threads The amount of threads, 1 runs everything on the calling thread
+     * @return The context
+     */
+    public static ExecutionContext withThreads(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Invalid amount of threads: " + threads);
+        }
+        if(threads == 1) {
+            return SEQUENTIAL;
+        }
+        return new ExecutionContext(threads);
+    }
+
+    /**
+     * @param pool The pool to run on, it isn't shut down when the context is closed
+     * @return A context that runs on the pool
+     */
+    public static ExecutionContext of(ForkJoinPool pool) {
+        if(pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        return new ExecutionContext(pool, false);
+    }
+
+    /**
+     * @return The context parallel stages started from the calling thread run in
+     */
+    public static ExecutionContext current() {
+        ExecutionContext context = CURRENT.get();
+        if(context != null) {
+            return context;
+        }
+        Thread thread = Thread.currentThread();
+        if(thread instanceof Worker) {
+            return ((Worker) thread).context;
+        }
+        if(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == ForkJoinPool.commonPool()) {
+            return COMMON;
+        }
+        return defaultContext;
+    }
+
+    /**
+     * @param context The context used by threads that aren't running in any other context
+     */
+    public static void setDefault(ExecutionContext context) {
+        if(context == null) {
+            throw new IllegalArgumentException("Context cannot be null");
+        }
+        defaultContext = context;
+    }
+
+    /**
+     * Runs a task in this context, all parallel stages it starts run in this context.
+     * @param task The task
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a task in this context, all parallel stages it starts run in this context.
+     * @param task The task
+     * @return The result of the task
+     */
+    public <T> T call(Supplier<T> task) {
+        // parallel streams run on the pool of the worker thread that uses them, and on the common pool everywhere else
+        boolean commonHere = pool == ForkJoinPool.commonPool() && !(Thread.currentThread() instanceof ForkJoinWorkerThread);
+        if(pool == null || commonHere || ForkJoinTask.getPool() == pool) {
+            return callHere(task);
+        }
+        // fork join tasks rethrow a copy of what they threw, so the original is handed over separately
+        Throwable[] failure = new Throwable[1];
+        T result = pool.submit(() -> {
+            try {
+                return callHere(task);
+            } catch(RuntimeException | Error e) {
+                failure[0] = e;
+                return null;
+            }
+        }).join();
+        if(failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+        }
+        if(failure[0] != null) {
+            throw (Error) failure[0];
+        }
+        return result;
+    }
+
+    private <T> T callHere(Supplier<T> task) {
+        ExecutionContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if(previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Makes a stream parallel or sequential, depending on this context.
+     * The stream has to be used within {@link #call(Supplier)} or {@link #run(Runnable)} of this context.
+     * @param stream The stream
+     * @return The stream
+     */
+    public <T, S extends BaseStream<T, S>> S stream(S stream) {
+        return pool == null ? stream.sequential() : stream.parallel();
+    }
+
+    /**
+     * Runs an action for every index from 0 until size in this context, in no particular order.
+     * @param size The amount of indexes
+     * @param action The action, called from multiple threads at once unless this context is sequential
+     */
+    public void forEachIndex(int size, IntConsumer action) {
+        run(() -> stream(IntStream.range(0, size)).forEach(action));
+    }
+
+    /**
+     * @return The executor tasks of this context run on, runs them directly on the calling thread if this context is sequential
+     */
+    public Executor executor() {
+        return pool != null ? pool : Runnable::run;
+    }
+
+    /**
+     * @return The threads of the pool of this context that are running right now, none if this context is sequential
+     */
+    public List<Thread> getWorkers() {
+        if(pool == null) {
+            return Collections.emptyList();
+        }
+        if(ownsPool) {
+            return new ArrayList<>(workers);
+        }
+        // the threads of pools created somewhere else can only be found by going through all threads
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while(root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count = root.enumerate(threads, true);
+        List<Thread> found = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            if(threads[i] instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) threads[i]).getPool() == pool) {
+                found.add(threads[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The amount of threads work is spread over
+     */
+    public int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+    public boolean isSequential() {
+        return pool == null;
+    }
+
+    /**
+     * Shuts the pool of this context down, if it was created by {@link #withThreads(int)}.
+     */
+    @Override
+    public void close() {
+        if(ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    private static class Worker extends ForkJoinWorkerThread {
+        private final ExecutionContext context;
+
+        private Worker(ForkJoinPool pool, ExecutionContext context) {
+            super(pool);
+            this.context = context;
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            context.workers.add(this);
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            context.workers.remove(this);
+            super.onTermination(exception);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.spigotcvn.merger.util;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A spliterator over the elements at a range of indexes, which are read through a function.
+ * It splits the range in halves, so parallel streams over it divide the work evenly without copying anything.
+ * @param <T> The type of the elements
+ */
+public class IndexSpliterator<T> implements Spliterator<T> {
+    private final IntFunction<T> elements;
+    private final int characteristics;
+    private int index;
+    private final int end;
+
+    /**
+     * @param elements Reads the element at an index, called from multiple threads at once when used in parallel
+     * @param start The first index
+     * @param end The index after the last one
+     * @param characteristics Additional characteristics of the elements, like {@link Spliterator#NONNULL}
+     */
+    public IndexSpliterator(IntFunction<T> elements, int start, int end, int characteristics) {
+        if(elements == null || start < 0 || start > end) {
+            throw new IllegalArgumentException("Invalid arguments: " + elements + ", " + start + ", " + end);
+        }
+        this.elements = elements;
+        this.index = start;
+        this.end = end;
+        this.characteristics = characteristics | ORDERED | SIZED | SUBSIZED;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if(index >= end) {
+            return false;
+        }
+        action.accept(elements.apply(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        int i = index;
+        index = end;
+        for(; i < end; i++) {
+            action.accept(elements.apply(i));
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int middle = (index + end) >>> 1;
+        if(middle <= index) {
+            return null;
+        }
+        Spliterator<T> prefix = new IndexSpliterator<>(elements, index, middle, characteristics);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.spigotcvn.merger.util;
+
+/**
+ * Helpers for writing JSON by hand.
+ */
+public class Json {
+    private Json() {
+    }
+
+    /**
+     * @param value The string
+     * @return The string as JSON string literal, with quotes
+     */
+    public static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for(char c : value.toCharArray()) {
+            if(c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if(c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.spigotcvn.merger.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+/**
+ * Encodes batches in parallel and writes them to a stream in order, as soon as they are done.
+ * Only a limited amount of batches is encoded or waiting to be written at once, so the memory
+ * used stays bounded no matter how much is written in total.
+ */
+public class OrderedBatchWriter {
+    private final Executor executor;
+    private final int window;
+
+    /**
+     * Creates a writer that encodes in the {@link ExecutionContext#current() current context}, with up to two batches per worker in flight.
+     */
+    public OrderedBatchWriter() {
+        this(ExecutionContext.current());
+    }
+
+    private OrderedBatchWriter(ExecutionContext context) {
+        this(context.executor(), context.getParallelism() * 2);
+    }
+
+    /**
+     * @param executor The executor the batches are encoded on
+     * @param window The maximum amount of batches that are encoded or waiting to be written at once
+     */
+    public OrderedBatchWriter(Executor executor, int window) {
+        if(executor == null || window < 1) {
+            throw new IllegalArgumentException("Invalid arguments: " + executor + ", " + window);
+        }
+        this.executor = executor;
+        this.window = window;
+    }
+
+    /**
+     * Encodes all batches and writes them to the stream in order.
+     * @param os The stream to write to
+     * @param batches The amount of batches
+     * @param encoder Encodes the batch with the given index into bytes, called from multiple threads at once
+     * @throws IOException If writing to the stream fails
+     */
+    public void write(OutputStream os, int batches, IntFunction<byte[]> encoder) throws IOException {
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while(next < batches || !inFlight.isEmpty()) {
+                while(next < batches && inFlight.size() < window) {
+                    int batch = next++;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> encoder.apply(batch), executor));
+                }
+                os.write(inFlight.poll().join());
+            }
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.spigotcvn.merger.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it into gzip format, using multiple threads.
+ * <p>
+ * The data is split into blocks, and every block is compressed into its own gzip member while the next
+ * blocks are still being written. The members are written in order, and as gzip readers
+ * (like {@link java.util.zip.GZIPInputStream}) read concatenated members as one stream, the result is a normal gzip file.
+ * Only a limited amount of blocks is compressed or waiting to be written at once.
+ * <p>
+ * Not safe to use from multiple threads.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // magic number
+            Deflater.DEFLATED, // compression method
+            0, // flags
+            0, 0, 0, 0, // modification time
+            0, // extra flags
+            (byte) 0xff // operating system, unknown
+    };
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int window;
+    private final int level;
+    private final Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockSize;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * Creates a stream that compresses 1 MB blocks in the {@link ExecutionContext#current() current context},
+     * with up to two blocks per worker in flight.
+     * @param out The stream to write the compressed data to
+     */
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, ExecutionContext.current());
+    }
+
+    private ParallelGzipOutputStream(OutputStream out, ExecutionContext context) {
+        this(out, context.executor(), context.getParallelism() * 2, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param out The stream to write the compressed data to
+     * @param executor The executor the blocks are compressed on
+     * @param window The maximum amount of blocks that are compressed or waiting to be written at once
+     * @param blockSize The amount of uncompressed bytes in a block
+     * @param level The compression level, see {@link Deflater}
+     */
+    public ParallelGzipOutputStream(OutputStream out, Executor executor, int window, int blockSize, int level) {
+        if(out == null || executor == null || window < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Invalid arguments: " + out + ", " + executor + ", " + window + ", " + blockSize);
+        }
+        this.out = out;
+        this.executor = executor;
+        this.window = window;
+        this.level = level;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockSize++] = (byte) b;
+        if(blockSize == block.length) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if(off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while(len > 0) {
+            int copied = Math.min(len, block.length - blockSize);
+            System.arraycopy(b, off, block, blockSize, copied);
+            blockSize += copied;
+            off += copied;
+            len -= copied;
+            if(blockSize == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the data written so far, even if it doesn't fill a whole block, and writes it.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if(blockSize > 0) {
+            submitBlock();
+        }
+        while(!inFlight.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        try {
+            if(blockSize > 0 || !written && inFlight.isEmpty()) {
+                // an empty file has to contain one empty member to be valid
+                submitBlock();
+            }
+            while(!inFlight.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            closed = true;
+            inFlight.forEach(future -> future.cancel(false));
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockSize;
+        inFlight.add(CompletableFuture.supplyAsync(() -> compress(data, length), executor));
+        block = new byte[block.length];
+        blockSize = 0;
+        while(inFlight.size() >= window) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            out.write(inFlight.poll().join());
+            written = true;
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private byte[] compress(byte[] data, int length) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        member.write(HEADER, 0, HEADER.length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while(!deflater.finished()) {
+                int compressed = deflater.deflate(buffer);
+                member.write(buffer, 0, compressed);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+        return member.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.spigotcvn.merger.validation;
+
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.metrics.Metrics;
+import io.github.spigotcvn.merger.metrics.Phase;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Checks tiny mappings for problems that break saving them or looking mappings up in them.
+ * <p>
+ * Only mappings that are saved are checked, which are the ones with a name in the first namespace.
+ * The mappings are checked in parallel batches, every batch collects its problems in a report of its own
+ * and the reports are merged in the order of the batches, so the threads never wait for each other
+ * and the report is the same no matter how many threads are used.
+ */
+public final class MappingValidator {
+    // amount of mappings that are checked together
+    private static final int BATCH_SIZE = 4096;
+
+    public enum Check {
+        /** A mapping has no name in a namespace */
+        MISSING_NAMES,
+        /** A mapping has the same name as another one in a namespace, looking up the original mapping of that name only finds the other one */
+        DUPLICATE_NAMES,
+        /** A member or descriptor of a mapping references a class that isn't mapped, although other classes of its package are */
+        DANGLING_CLASSES
+    }
+
+    private MappingValidator() {
+    }
+
+    /**
+     * Runs all checks.
+     * @param tiny The mappings to check
+     * @return The problems found
+     */
+    public static ValidationReport validate(TinyMappingFile tiny) {
+        return validate(tiny, EnumSet.allOf(Check.class));
+    }
+
+    /**
+     * @param tiny The mappings to check
+     * @param checks The checks to run
+     * @return The problems found
+     */
+    public static ValidationReport validate(TinyMappingFile tiny, Set<Check> checks) {
+        try(Phase phase = Metrics.start("validate")) {
+            List<String> namespaces = new ArrayList<>(tiny.getNamespaceNames());
+            Set<String> classes = new HashSet<>();
+            Set<String> packages = new HashSet<>();
+            if(checks.contains(Check.DANGLING_CLASSES)) {
+                for(int row = 0; row < tiny.size(); row++) {
+                    Mapping original = tiny.getOriginalMapping(row);
+                    if(original.getType() == Mapping.Type.CLASS) {
+                        classes.add(original.getName());
+                        packages.add(packageOf(original.getName()));
+                    }
+                }
+            }
+
+            int size = tiny.size();
+            int batches = (size + BATCH_SIZE - 1) / BATCH_SIZE;
+            ExecutionContext context = ExecutionContext.current();
+            ValidationReport report = context.call(() -> context.stream(IntStream.range(0, batches))
+                    .collect(ValidationReport::new, (found, batch) -> {
+                        int end = Math.min(size, (batch + 1) * BATCH_SIZE);
+                        for(int row = batch * BATCH_SIZE; row < end; row++) {
+                            check(tiny, namespaces, checks, classes, packages, row, found);
+                        }
+                    }, ValidationReport::merge));
+            phase.setEntries(size);
+            return report;
+        }
+    }
+
+    private static void check(TinyMappingFile tiny, List<String> namespaces, Set<Check> checks,
+                              Set<String> classes, Set<String> packages, int row, ValidationReport found) {
+        if(!namespaces.isEmpty() && tiny.getName(namespaces.get(0), row) == null) {
+            // not saved
+            return;
+        }
+        Mapping original = tiny.getOriginalMapping(row);
+        for(String namespace : namespaces) {
+            String name = tiny.getName(namespace, row);
+            if(name == null) {
+                if(checks.contains(Check.MISSING_NAMES)) {
+                    found.add(Check.MISSING_NAMES, namespace, original);
+                }
+                continue;
+            }
+            if(checks.contains(Check.DUPLICATE_NAMES)) {
+                Mapping mapped = new Mapping(original.getType(), name, original.getClassName(), original.getDescriptor());
+                if(!original.equals(tiny.getOriginal(namespace, mapped))) {
+                    found.add(Check.DUPLICATE_NAMES, namespace, original);
+                }
+            }
+        }
+        if(checks.contains(Check.DANGLING_CLASSES) && original.getType() != Mapping.Type.CLASS
+                && (isDangling(original.getClassName(), classes, packages) || hasDanglingClass(original.getDescriptor(), classes, packages))) {
+            found.add(Check.DANGLING_CLASSES, tiny.getOriginalNamespaceName(), original);
+        }
+    }
+
+    private static boolean hasDanglingClass(String descriptor, Set<String> classes, Set<String> packages) {
+        if(descriptor == null) {
+            return false;
+        }
+        for(int i = descriptor.indexOf('L'); i != -1; i = descriptor.indexOf('L', i)) {
+            int end = descriptor.indexOf(';', i);
+            if(end == -1) {
+                return false;
+            }
+            if(isDangling(descriptor.substring(i + 1, end), classes, packages)) {
+                return true;
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    private static boolean isDangling(String className, Set<String> classes, Set<String> packages) {
+        return className != null && !classes.contains(className) && packages.contains(packageOf(className));
+    }
+
+    private static String packageOf(String className) {
+        int end = className.lastIndexOf('/');
+        return end == -1 ? "" : className.substring(0, end);
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.spigotcvn.merger.validation;
+
+/**
+ * What saving tiny mappings does with a mapping that has no name in one of the namespaces.
+ */
+public enum MissingNamePolicy {
+    /** Nothing is saved, the save fails with a report of all missing names */
+    FAIL,
+    /** The original name is saved instead, like merging does for mappings it has no name for */
+    FILL,
+    /** The mapping isn't saved at all */
+    SKIP
+}
@@ -0,0 +1,104 @@
+package io.github.spigotcvn.merger.validation;
+
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+
+import java.util.*;
+
+/**
+ * The problems {@link MappingValidator} found, counted per check and namespace.
+ * Only the first few mappings of every check and namespace are kept as examples.
+ */
+public final class ValidationReport {
+    private static final int MAX_EXAMPLES = 5;
+
+    private final Map<MappingValidator.Check, Map<String, Problems>> problems = new EnumMap<>(MappingValidator.Check.class);
+
+    ValidationReport() {
+    }
+
+    void add(MappingValidator.Check check, String namespace, Mapping mapping) {
+        Problems found = problems.computeIfAbsent(check, key -> new LinkedHashMap<>())
+                .computeIfAbsent(namespace, key -> new Problems());
+        found.count++;
+        if(found.examples.size() < MAX_EXAMPLES) {
+            found.examples.add(mapping);
+        }
+    }
+
+    /**
+     * Adds the problems of a report about the rows after the ones of this report.
+     */
+    void merge(ValidationReport other) {
+        other.problems.forEach((check, byNamespace) -> byNamespace.forEach((namespace, otherFound) -> {
+            Problems found = problems.computeIfAbsent(check, key -> new LinkedHashMap<>())
+                    .computeIfAbsent(namespace, key -> new Problems());
+            found.count += otherFound.count;
+            for(Mapping example : otherFound.examples) {
+                if(found.examples.size() == MAX_EXAMPLES) {
+                    break;
+                }
+                found.examples.add(example);
+            }
+        }));
+    }
+
+    public boolean isEmpty() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * @return The amount of mappings the check failed for in all namespaces
+     */
+    public long getCount(MappingValidator.Check check) {
+        return problems.getOrDefault(check, Collections.emptyMap()).values().stream().mapToLong(found -> found.count).sum();
+    }
+
+    /**
+     * @return The amount of mappings the check failed for in the namespace
+     */
+    public long getCount(MappingValidator.Check check, String namespace) {
+        Problems found = problems.getOrDefault(check, Collections.emptyMap()).get(namespace);
+        return found == null ? 0 : found.count;
+    }
+
+    /**
+     * @return The namespaces the check failed in, in the order they were found in
+     */
+    public Set<String> getNamespaces(MappingValidator.Check check) {
+        return Collections.unmodifiableSet(problems.getOrDefault(check, Collections.emptyMap()).keySet());
+    }
+
+    /**
+     * @return The first original mappings the check failed for in the namespace, in the order of the file
+     */
+    public List<Mapping> getExamples(MappingValidator.Check check, String namespace) {
+        Problems found = problems.getOrDefault(check, Collections.emptyMap()).get(namespace);
+        return found == null ? Collections.emptyList() : Collections.unmodifiableList(found.examples);
+    }
+
+    /**
+     * @return One line per check and namespace with problems, or a single line if there are none
+     */
+    @Override
+    public String toString() {
+        if(problems.isEmpty()) {
+            return "No problems found.";
+        }
+        StringBuilder report = new StringBuilder();
+        problems.forEach((check, byNamespace) -> byNamespace.forEach((namespace, found) -> {
+            if(report.length() > 0) {
+                report.append('\n');
+            }
+            report.append(check).append(" in ").append(namespace).append(": ").append(found.count).append(" mappings, like ");
+            for(int i = 0; i < found.examples.size(); i++) {
+                report.append(i == 0 ? "" : ", ").append(found.examples.get(i).toCompactString());
+            }
+        }));
+        return report.toString();
+    }
+
+    private static class Problems {
+        private long count;
+        private final List<Mapping> examples = new ArrayList<>(MAX_EXAMPLES);
+    }
+}
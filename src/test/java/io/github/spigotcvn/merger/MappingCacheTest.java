@@ -0,0 +1,31 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingCacheTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void changedFilesReplaceTheirCachedVersion() {
+        MappingCache cache = new MappingCache(1024 * 1024);
+        File file = TestMappings.write(new File(directory, "mappings.csrg"), "a A\n");
+        long lastModified = file.lastModified();
+
+        assertEquals("A", cache.loadCSRG(file).getRemappedMapping(0).getName());
+        TestMappings.write(file, "a B\n");
+        assertTrue(file.setLastModified(lastModified + 1000));
+        CSRGMappingFile changed = cache.loadCSRG(file);
+        assertEquals("B", changed.getRemappedMapping(0).getName());
+
+        assertTrue(cache.toString().startsWith("Cached files: 1 "), cache.toString());
+        cache.loadCSRG(file);
+        assertTrue(cache.toString().endsWith("hits: 1, misses: 2"), cache.toString());
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.validation.MissingNamePolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingMergerTest {
+    // the second class and the first field miss names, the last method misses a name and has no csrg mapping
+    private static final String SHORT_LINES = "v1\tofficial\tnamed\tspigot\n"
+            + "CLASS\ta\tFoo\tFoo\n"
+            + "CLASS\tb\tBar\n"
+            + "FIELD\ta\tI\tx\tone\n"
+            + "FIELD\ta\tI\ty\tone\ttwo\n"
+            + "METHOD\ta\t()V\tm\tm1\n";
+    private static final String SHORT_LINES_CSRG = "a A\nb B\na x X\n";
+    // Foo has no name in named and a is named Foo, so both end up as Foo
+    private static final String RENAMED = "v1\tofficial\tintermediary\tnamed\n"
+            + "CLASS\ta\tclass_1\tFoo\n"
+            + "CLASS\tFoo\tclass_2\n"
+            + "CLASS\tc\tclass_3\n"
+            + "CLASS\td\tclass_4\tBar\n"
+            + "FIELD\ta\tLc;\tf\tfield_1\tone\n"
+            + "FIELD\tFoo\tLc;\tone\tfield_2\n"
+            + "FIELD\tc\tLa;\tg\tfield_3\n"
+            + "METHOD\td\t(La;LFoo;)Lc;\tm\tmethod_1\trun\n"
+            + "METHOD\tc\t()Ld;\tn\tmethod_2\n";
+
+    @Test
+    void remergeMatchesMergingTheNewCsrg() throws IOException {
+        MappingGenerator generator = TestMappings.generator(3);
+        byte[] tiny = TestMappings.bytes(generator.tiny());
+        String previousText = TestMappings.text(generator.csrg());
+        CSRGMappingFile previous = TestMappings.csrg(previousText);
+        // renames, removes and keeps entries, classes, fields and methods alike
+        StringBuilder newText = new StringBuilder();
+        String[] lines = previousText.split("\n");
+        for(int i = 0; i < lines.length; i++) {
+            if(i % 11 == 0) {
+                continue;
+            }
+            newText.append(lines[i]).append(i % 7 == 0 ? "Renamed" : "").append('\n');
+        }
+        CSRGMappingFile csrg = TestMappings.csrg(newText.toString());
+
+        TinyMappingFile remerged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(remerged, previous, "spigot");
+        int changed = MappingMerger.remergeTinyWithCSRG(remerged, previous, csrg, "spigot");
+
+        TinyMappingFile merged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot");
+        assertTrue(changed > 0);
+        assertEquals(TestMappings.text(merged), TestMappings.text(remerged));
+    }
+
+    @Test
+    void remergeWithTheSameCsrgChangesNothing() throws IOException {
+        MappingGenerator generator = TestMappings.generator(4);
+        TinyMappingFile tiny = TestMappings.tiny(generator.tiny());
+        CSRGMappingFile csrg = TestMappings.csrg(generator.csrg());
+        MappingMerger.mergeTinyWithCSRG(tiny, csrg, "spigot");
+        String merged = TestMappings.text(tiny);
+
+        assertEquals(0, MappingMerger.remergeTinyWithCSRG(tiny, csrg, TestMappings.csrg(generator.csrg()), "spigot"));
+        assertEquals(merged, TestMappings.text(tiny));
+    }
+
+    @Test
+    void remergeOfReorderedFieldsMatchesMergingTheNewCsrg() throws IOException {
+        byte[] tiny = "v1\tofficial\tnamed\nFIELD\ta\tI\tx\ty\nFIELD\ta\tJ\tx\tz\n".getBytes(StandardCharsets.UTF_8);
+        Mapping withDescriptor = new Mapping(Mapping.Type.FIELD, "x", "a", "I");
+        Mapping withoutDescriptor = new Mapping(Mapping.Type.FIELD, "x", "a");
+        CSRGMappingFile previous = new CSRGMappingFile();
+        previous.addMapping(withDescriptor, new Mapping(Mapping.Type.FIELD, "first", "a", "I"));
+        previous.addMapping(withoutDescriptor, new Mapping(Mapping.Type.FIELD, "second", "a"));
+        // the same entries in the other order
+        CSRGMappingFile csrg = new CSRGMappingFile();
+        csrg.addMapping(withoutDescriptor, new Mapping(Mapping.Type.FIELD, "second", "a"));
+        csrg.addMapping(withDescriptor, new Mapping(Mapping.Type.FIELD, "first", "a", "I"));
+
+        TinyMappingFile remerged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(remerged, previous, "spigot");
+        assertEquals(0, MappingMerger.remergeTinyWithCSRG(remerged, previous, csrg, "spigot"));
+
+        TinyMappingFile merged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot");
+        assertEquals(TestMappings.text(merged), TestMappings.text(remerged));
+    }
+
+    @Test
+    void replacingTheOriginalNamespaceMergesMappingsWithTheSameNewName() throws IOException {
+        TinyMappingFile tiny = TestMappings.tiny(RENAMED);
+        MappingMerger.replaceOriginalNamespace(tiny, "named");
+
+        // the first mapping keeps its position and the names of the last one are kept
+        assertEquals("v1\tnamed\tintermediary\n"
+                + "CLASS\tFoo\tclass_2\n"
+                + "CLASS\tc\tclass_3\n"
+                + "CLASS\tBar\tclass_4\n"
+                + "FIELD\tFoo\tLc;\tone\tfield_2\n"
+                + "FIELD\tc\tLFoo;\tg\tfield_3\n"
+                + "METHOD\tBar\t(LFoo;LFoo;)Lc;\trun\tmethod_1\n"
+                + "METHOD\tc\t()LBar;\tn\tmethod_2\n", TestMappings.text(tiny));
+    }
+
+    @Test
+    void replacingTheOriginalNamespaceDropsMappingsWithoutNames() throws IOException {
+        TinyMappingFile tiny = TestMappings.tiny(RENAMED);
+        MappingMerger.replaceOriginalNamespace(tiny, "intermediary", "inter");
+
+        assertEquals("v1\tinter\tnamed\n"
+                + "CLASS\tclass_1\tFoo\n"
+                + "CLASS\tclass_4\tBar\n"
+                + "FIELD\tclass_1\tLclass_3;\tfield_1\tone\n"
+                + "METHOD\tclass_4\t(Lclass_1;Lclass_2;)Lclass_3;\tmethod_1\trun\n", TestMappings.text(tiny));
+    }
+
+    @Test
+    void streamingMergeMatchesMergeInMemory() throws IOException {
+        MappingGenerator generator = TestMappings.generator(1);
+        byte[] tiny = TestMappings.bytes(generator.tiny());
+        CSRGMappingFile csrg = TestMappings.csrg(generator.csrg());
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        MappingMerger.mergeTinyWithCSRG(new ByteArrayInputStream(tiny), csrg, "spigot", streamed);
+
+        TinyMappingFile merged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot");
+        assertEquals(TestMappings.text(merged), streamed.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    void streamingMergeOfMultipleCsrgsMatchesMergeInMemory() throws IOException {
+        MappingGenerator generator = TestMappings.generator(2);
+        byte[] tiny = TestMappings.bytes(generator.tiny());
+        Map<String, CSRGMappingFile> csrgs = new LinkedHashMap<>();
+        csrgs.put("spigot", TestMappings.csrg(generator.csrg()));
+        csrgs.put("named2", MappingMerger.createCSRGfromTiny(TestMappings.tiny(tiny), "official", "named"));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        MappingMerger.mergeTinyWithCSRG(new ByteArrayInputStream(tiny), csrgs, streamed);
+
+        TinyMappingFile merged = TestMappings.tiny(tiny);
+        MappingMerger.mergeTinyWithCSRG(merged, csrgs);
+        assertEquals(TestMappings.text(merged), streamed.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = MissingNamePolicy.class, names = {"FILL", "SKIP"})
+    void streamingMergeHandlesShortLinesLikeSaving(MissingNamePolicy policy) throws IOException {
+        CSRGMappingFile csrg = TestMappings.csrg(SHORT_LINES_CSRG);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        MappingMerger.mergeTinyWithCSRG(new ByteArrayInputStream(SHORT_LINES.getBytes(StandardCharsets.UTF_8)),
+                Collections.singletonMap("spigot2", csrg), policy, streamed);
+
+        TinyMappingFile merged = TestMappings.tiny(SHORT_LINES);
+        merged.setMissingNamePolicy(policy);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot2");
+        assertEquals(TestMappings.text(merged), streamed.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    void shortLinesFailBothMerges() throws IOException {
+        CSRGMappingFile csrg = TestMappings.csrg(SHORT_LINES_CSRG);
+
+        assertThrows(IllegalStateException.class, () -> MappingMerger.mergeTinyWithCSRG(
+                new ByteArrayInputStream(SHORT_LINES.getBytes(StandardCharsets.UTF_8)),
+                Collections.singletonMap("spigot2", csrg), MissingNamePolicy.FAIL, new ByteArrayOutputStream()));
+
+        TinyMappingFile merged = TestMappings.tiny(SHORT_LINES);
+        merged.setMissingNamePolicy(MissingNamePolicy.FAIL);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot2");
+        assertThrows(IllegalStateException.class, () -> TestMappings.bytes(merged));
+    }
+
+    @Test
+    void fillingShortLinesKeepsTheColumnsAligned() throws IOException {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        MappingMerger.mergeTinyWithCSRG(new ByteArrayInputStream(SHORT_LINES.getBytes(StandardCharsets.UTF_8)),
+                Collections.singletonMap("spigot2", TestMappings.csrg(SHORT_LINES_CSRG)), MissingNamePolicy.FILL, streamed);
+
+        for(String line : streamed.toString(StandardCharsets.UTF_8.name()).split("\n")) {
+            int names = line.split("\t").length - (line.startsWith("FIELD") || line.startsWith("METHOD") ? 3 : 1);
+            assertEquals(4, names, line);
+        }
+    }
+
+    @Test
+    void streamingMergeLeavesOutLinesWithoutNames() throws IOException {
+        String text = "v1\tofficial\tnamed\nCLASS\ta\tFoo\nCLASS\tb\n";
+        CSRGMappingFile csrg = TestMappings.csrg(SHORT_LINES_CSRG);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        MappingMerger.mergeTinyWithCSRG(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), csrg, "spigot", streamed);
+
+        TinyMappingFile merged = TestMappings.tiny(text);
+        MappingMerger.mergeTinyWithCSRG(merged, csrg, "spigot");
+        assertEquals(TestMappings.text(merged), streamed.toString(StandardCharsets.UTF_8.name()));
+        assertEquals("v1\tofficial\tnamed\tspigot\nCLASS\ta\tFoo\tA\n", TestMappings.text(merged));
+    }
+
+    @Test
+    void fieldsWithoutAnExactMatchUseTheFieldWithoutADescriptor() throws IOException {
+        TinyMappingFile tiny = TestMappings.tiny("v1\tofficial\tnamed\nFIELD\ta\tJ\tx\ty\n");
+        CSRGMappingFile csrg = new CSRGMappingFile();
+        // a field of another type comes first, only the field without a descriptor is used for every descriptor
+        csrg.addMapping(new Mapping(Mapping.Type.FIELD, "x", "a", "I"), new Mapping(Mapping.Type.FIELD, "wrong", "a", "I"));
+        csrg.addMapping(new Mapping(Mapping.Type.FIELD, "x", "a"), new Mapping(Mapping.Type.FIELD, "right", "a"));
+
+        MappingMerger.mergeTinyWithCSRG(tiny, csrg, "spigot");
+        assertEquals("v1\tofficial\tnamed\tspigot\nFIELD\ta\tJ\tx\ty\tright\n", TestMappings.text(tiny));
+    }
+}
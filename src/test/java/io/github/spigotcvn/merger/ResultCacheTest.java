@@ -0,0 +1,94 @@
+package io.github.spigotcvn.merger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void keyDependsOnArgumentsAndInputContents() {
+        File input = TestMappings.write(new File(directory, "input"), "a A\n");
+        List<File> inputs = Collections.singletonList(input);
+        String key = ResultCache.key(Arrays.asList("MERGE", "spigot"), inputs);
+
+        assertEquals(key, ResultCache.key(Arrays.asList("MERGE", "spigot"), inputs));
+        assertNotEquals(key, ResultCache.key(Arrays.asList("MERGE", "named"), inputs));
+        assertNotEquals(key, ResultCache.key(Arrays.asList("MERGE", null), inputs));
+        assertNotEquals(ResultCache.key(Arrays.asList("MERGE", null), inputs), ResultCache.key(Arrays.asList("MERGE", "null"), inputs));
+        // arguments can't run into each other
+        assertNotEquals(ResultCache.key(Arrays.asList("ab", "c"), inputs), ResultCache.key(Arrays.asList("a", "bc"), inputs));
+
+        TestMappings.write(input, "a B\n");
+        assertNotEquals(key, ResultCache.key(Arrays.asList("MERGE", "spigot"), inputs));
+    }
+
+    @Test
+    void keyDependsOnTheCode() {
+        List<File> inputs = Collections.singletonList(TestMappings.write(new File(directory, "input"), "a A\n"));
+        List<String> arguments = Arrays.asList("MERGE", "spigot");
+
+        assertEquals(ResultCache.key(arguments, inputs), ResultCache.key(arguments, inputs, ResultCache.codeIdentity()));
+        assertEquals(ResultCache.codeIdentity(), ResultCache.codeIdentity());
+        assertNotEquals(ResultCache.key(arguments, inputs, "a"), ResultCache.key(arguments, inputs, "b"));
+        assertNotEquals(ResultCache.key(arguments, inputs), ResultCache.key(arguments, inputs, "other build"));
+    }
+
+    @Test
+    void restoresStoredResults() throws IOException {
+        ResultCache cache = new ResultCache(new File(directory, "cache"), 1024 * 1024, false);
+        File out = TestMappings.write(new File(directory, "out"), "result");
+        File restored = new File(directory, "restored");
+
+        assertFalse(cache.restore("key", restored));
+        cache.store("key", out);
+        assertTrue(cache.restore("key", restored));
+        assertEquals("result", new String(Files.readAllBytes(restored.toPath()), StandardCharsets.UTF_8));
+        assertFalse(cache.restore("other", restored));
+    }
+
+    @Test
+    void restoresLinkedResults() throws IOException {
+        ResultCache cache = new ResultCache(new File(directory, "cache"), 1024 * 1024, true);
+        File out = TestMappings.write(new File(directory, "out"), "result");
+        File restored = TestMappings.write(new File(directory, "restored"), "old");
+
+        cache.store("key", out);
+        assertTrue(cache.restore("key", restored));
+        assertEquals("result", new String(Files.readAllBytes(restored.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResults() throws IOException {
+        File cacheDirectory = new File(directory, "cache");
+        // room for two results
+        ResultCache cache = new ResultCache(cacheDirectory, 250, false);
+        File out = TestMappings.write(new File(directory, "out"), new byte[100]);
+        File restored = new File(directory, "restored");
+        long now = System.currentTimeMillis();
+
+        cache.store("first", out);
+        Files.setLastModifiedTime(new File(cacheDirectory, "first").toPath(), FileTime.fromMillis(now - 2 * 60 * 60 * 1000));
+        cache.store("second", out);
+        Files.setLastModifiedTime(new File(cacheDirectory, "second").toPath(), FileTime.fromMillis(now - 60 * 60 * 1000));
+        // using the first result makes the second one the least recently used
+        assertTrue(cache.restore("first", restored));
+        cache.store("third", out);
+
+        assertTrue(cache.restore("first", restored));
+        assertFalse(cache.restore("second", restored));
+        assertTrue(cache.restore("third", restored));
+    }
+}
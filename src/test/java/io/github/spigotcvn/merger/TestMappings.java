@@ -0,0 +1,124 @@
+package io.github.spigotcvn.merger;
+
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.Saveable;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Mappings for tests, generated by {@link MappingGenerator} or written out by hand.
+ */
+public final class TestMappings {
+    private TestMappings() {
+    }
+
+    /**
+     * @return A generator of a few thousand entries with the namespaces official, intermediary and named
+     */
+    public static MappingGenerator generator(long seed) {
+        MappingGenerator generator = new MappingGenerator(seed);
+        generator.setEntries(5000);
+        return generator;
+    }
+
+    /**
+     * Writes a tiny file that is big enough to be loaded in multiple chunks and saved in multiple batches.
+     * @param classes The amount of classes, every class has a field and a method as well
+     * @param newline The line separator
+     * @param trailingNewline Whether the last line ends with a line separator
+     */
+    public static String largeTiny(int classes, String newline, boolean trailingNewline) {
+        StringBuilder text = new StringBuilder("v1\tofficial\tintermediary\tnamed").append(newline);
+        for(int i = 0; i < classes; i++) {
+            String name = "net/minecraft/c" + i;
+            text.append("CLASS\t").append(name).append("\tclass_").append(i).append("\tnet/minecraft/Named").append(i).append(newline);
+            text.append("FIELD\t").append(name).append("\tI\tf\tfield_").append(i).append("\tvalue").append(i).append(newline);
+            text.append("METHOD\t").append(name).append("\t(L").append(name).append(";)V\tm\tmethod_").append(i).append("\trun").append(i);
+            if(trailingNewline || i < classes - 1) {
+                text.append(newline);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the csrg mappings of {@link #largeTiny(int, String, boolean)} from official to named.
+     */
+    public static String largeCsrg(int classes, String newline, boolean trailingNewline) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < classes; i++) {
+            String name = "net/minecraft/c" + i;
+            text.append(name).append(" net/minecraft/Named").append(i).append(newline);
+            text.append(name).append(" f value").append(i).append(newline);
+            text.append(name).append(" m (L").append(name).append(";)V run").append(i);
+            if(trailingNewline || i < classes - 1) {
+                text.append(newline);
+            }
+        }
+        return text.toString();
+    }
+
+    public static byte[] bytes(Saveable mappings) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        mappings.saveToStream(os);
+        return os.toByteArray();
+    }
+
+    public static String text(Saveable mappings) {
+        return new String(bytes(mappings), StandardCharsets.UTF_8);
+    }
+
+    public static File write(File file, Saveable mappings) {
+        return write(file, bytes(mappings));
+    }
+
+    public static File write(File file, String text) {
+        return write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static File write(File file, byte[] bytes) {
+        try {
+            Files.write(file.toPath(), bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    public static TinyMappingFile tiny(Saveable mappings) throws InvalidMappingFormatException {
+        return tiny(bytes(mappings));
+    }
+
+    public static TinyMappingFile tiny(String text) throws InvalidMappingFormatException {
+        return tiny(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TinyMappingFile tiny(byte[] bytes) throws InvalidMappingFormatException {
+        TinyMappingFile tiny = new TinyMappingFile();
+        tiny.loadFromStream(new ByteArrayInputStream(bytes));
+        return tiny;
+    }
+
+    public static CSRGMappingFile csrg(Saveable mappings) throws InvalidMappingFormatException {
+        return csrg(bytes(mappings));
+    }
+
+    public static CSRGMappingFile csrg(String text) throws InvalidMappingFormatException {
+        return csrg(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CSRGMappingFile csrg(byte[] bytes) throws InvalidMappingFormatException {
+        CSRGMappingFile csrg = new CSRGMappingFile();
+        csrg.loadFromStream(new ByteArrayInputStream(bytes));
+        return csrg;
+    }
+}
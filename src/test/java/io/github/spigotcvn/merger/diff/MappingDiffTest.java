@@ -0,0 +1,134 @@
+package io.github.spigotcvn.merger.diff;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.files.CSRGMappingFile;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingDiffTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void findsAddedRemovedAndRenamedNames() throws InvalidMappingFormatException {
+        TinyMappingFile older = TestMappings.tiny("v1\tofficial\tnamed\n"
+                + "CLASS\ta\tFoo\n"
+                + "CLASS\tb\tBar\n"
+                + "FIELD\ta\tI\tx\tone\n"
+                + "METHOD\ta\t()V\tm\trun\n");
+        TinyMappingFile newer = TestMappings.tiny("v1\tofficial\tnamed\tspigot\n"
+                + "CLASS\ta\tFoo\tFoo\n"
+                + "CLASS\tb\tBaz\tBaz\n"
+                + "METHOD\ta\t()V\tm\trun\trun\n"
+                + "CLASS\tc\tNew\tNew\n");
+
+        // the newer file is compared first, the mappings only the older file has come last
+        assertEquals(Arrays.asList(
+                "ADDED spigot a null Foo",
+                "RENAMED named b Bar Baz",
+                "ADDED spigot b null Baz",
+                "ADDED spigot a.m()V null run",
+                "ADDED named c null New",
+                "ADDED spigot c null New",
+                "REMOVED named a.x:I one null"
+        ), diff(older, newer));
+    }
+
+    @Test
+    void comparingFilesMatchesComparingMappingsInMemory() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(1);
+        String olderText = TestMappings.text(generator.tiny());
+        String newerText = change(olderText);
+        File olderFile = TestMappings.write(new File(directory, "older.tiny"), olderText);
+        File newerFile = TestMappings.write(new File(directory, "newer.tiny"), newerText);
+
+        List<String> inMemory = diff(TestMappings.tiny(olderText), TestMappings.tiny(newerText));
+        List<String> fromFiles = new ArrayList<>();
+        MappingDiff.diffTiny(olderFile, newerFile, change -> fromFiles.add(describe(change)));
+
+        assertFalse(inMemory.isEmpty());
+        assertEquals(inMemory, fromFiles);
+    }
+
+    @Test
+    void comparingCsrgFilesMatchesComparingMappingsInMemory() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(2);
+        String olderText = TestMappings.text(generator.csrg());
+        String newerText = change(olderText);
+        File olderFile = TestMappings.write(new File(directory, "older.csrg"), olderText);
+        File newerFile = TestMappings.write(new File(directory, "newer.csrg"), newerText);
+
+        List<String> inMemory = new ArrayList<>();
+        MappingDiff.diff(TestMappings.csrg(olderText), TestMappings.csrg(newerText), change -> inMemory.add(describe(change)));
+        List<String> fromFiles = new ArrayList<>();
+        MappingDiff.diffCSRG(olderFile, newerFile, change -> fromFiles.add(describe(change)));
+
+        assertFalse(inMemory.isEmpty());
+        assertEquals(inMemory, fromFiles);
+    }
+
+    @Test
+    void swappingTheFilesSwapsAddedAndRemoved() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(3);
+        String olderText = TestMappings.text(generator.csrg());
+        CSRGMappingFile older = TestMappings.csrg(olderText);
+        CSRGMappingFile newer = TestMappings.csrg(change(olderText));
+
+        List<MappingChange> forward = new ArrayList<>();
+        MappingDiff.diff(older, newer, forward::add);
+        List<MappingChange> backward = new ArrayList<>();
+        MappingDiff.diff(newer, older, backward::add);
+
+        assertEquals(count(forward, MappingChange.Kind.ADDED), count(backward, MappingChange.Kind.REMOVED));
+        assertEquals(count(forward, MappingChange.Kind.REMOVED), count(backward, MappingChange.Kind.ADDED));
+        assertEquals(count(forward, MappingChange.Kind.RENAMED), count(backward, MappingChange.Kind.RENAMED));
+    }
+
+    @Test
+    void rejectsDifferentOriginalNamespaces() throws InvalidMappingFormatException {
+        TinyMappingFile older = TestMappings.tiny("v1\tofficial\tnamed\nCLASS\ta\tFoo\n");
+        TinyMappingFile newer = TestMappings.tiny("v1\tintermediary\tnamed\nCLASS\ta\tFoo\n");
+
+        assertThrows(IllegalArgumentException.class, () -> diff(older, newer));
+    }
+
+    /**
+     * Renames the last name of every seventh line and removes every eleventh line.
+     */
+    private static String change(String text) {
+        StringBuilder changed = new StringBuilder();
+        String[] lines = text.split("\n");
+        for(int i = 0; i < lines.length; i++) {
+            if(i > 0 && i % 11 == 0) {
+                continue;
+            }
+            changed.append(lines[i]).append(i > 0 && i % 7 == 0 ? "Renamed" : "").append('\n');
+        }
+        return changed.toString();
+    }
+
+    private static List<String> diff(TinyMappingFile older, TinyMappingFile newer) {
+        List<String> changes = new ArrayList<>();
+        MappingDiff.diff(older, newer, change -> changes.add(describe(change)));
+        return changes;
+    }
+
+    private static String describe(MappingChange change) {
+        return change.getKind() + " " + change.getNamespace() + " " + change.getOriginalText() + " "
+                + change.getOldName() + " " + change.getNewName();
+    }
+
+    private static long count(List<MappingChange> changes, MappingChange.Kind kind) {
+        return changes.stream().filter(change -> change.getKind() == kind).count();
+    }
+}
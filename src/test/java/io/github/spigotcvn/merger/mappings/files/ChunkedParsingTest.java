@@ -0,0 +1,98 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.SymbolTable;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedParsingTest {
+    // big enough for a few chunks of at least 1 MB
+    private static final int CLASSES = 30000;
+
+    @Test
+    void chunksOnlyEndAtLineBreaks() {
+        byte[] bytes = "a b\r\nc d e\n\nf\r\ng h i j".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<String> lines = lines(buffer, 0, bytes.length);
+
+        for(int chunks = 1; chunks <= bytes.length + 2; chunks++) {
+            int[] bounds = ByteLineTokenizer.chunkBounds(buffer, 0, bytes.length, chunks);
+            List<String> chunked = new ArrayList<>();
+            for(int chunk = 0; chunk < chunks; chunk++) {
+                int bound = bounds[chunk];
+                assertTrue(bound == 0 || bound == bytes.length || bytes[bound - 1] == '\n', "chunk " + chunk + " of " + chunks);
+                chunked.addAll(lines(buffer, bound, bounds[chunk + 1]));
+            }
+            assertEquals(lines, chunked, chunks + " chunks");
+        }
+        assertEquals(Arrays.asList("a b", "c d e", "", "f", "g h i j"), lines);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"'\n', true", "'\n', false", "'\r\n', true", "'\r\n', false"})
+    void tinyLoadedInChunksMatchesSequentialLoad(String newline, boolean trailingNewline) throws InvalidMappingFormatException {
+        byte[] bytes = TestMappings.largeTiny(CLASSES, newline, trailingNewline).getBytes(StandardCharsets.UTF_8);
+        String expected = TestMappings.text(TestMappings.tiny(bytes));
+
+        try(ExecutionContext context = ExecutionContext.withThreads(4)) {
+            assertEquals(expected, TestMappings.text(loadTiny(context, bytes)));
+        }
+        assertEquals(expected, TestMappings.text(loadTiny(ExecutionContext.sequential(), bytes)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"'\n', true", "'\n', false", "'\r\n', true", "'\r\n', false"})
+    void csrgLoadedInChunksMatchesSequentialLoad(String newline, boolean trailingNewline) throws InvalidMappingFormatException {
+        byte[] bytes = TestMappings.largeCsrg(CLASSES, newline, trailingNewline).getBytes(StandardCharsets.UTF_8);
+        String expected = TestMappings.text(TestMappings.csrg(bytes));
+
+        try(ExecutionContext context = ExecutionContext.withThreads(4)) {
+            assertEquals(expected, TestMappings.text(loadCsrg(context, bytes)));
+        }
+        assertEquals(expected, TestMappings.text(loadCsrg(ExecutionContext.sequential(), bytes)));
+    }
+
+    private static TinyMappingFile loadTiny(ExecutionContext context, byte[] bytes) {
+        TinyMappingFile tiny = new TinyMappingFile();
+        context.run(() -> {
+            try {
+                tiny.loadFromBuffer(ByteBuffer.wrap(bytes));
+            } catch (InvalidMappingFormatException e) {
+                throw new AssertionError(e);
+            }
+        });
+        return tiny;
+    }
+
+    private static CSRGMappingFile loadCsrg(ExecutionContext context, byte[] bytes) {
+        CSRGMappingFile csrg = new CSRGMappingFile();
+        context.run(() -> {
+            try {
+                csrg.loadFromBuffer(ByteBuffer.wrap(bytes));
+            } catch (InvalidMappingFormatException e) {
+                throw new AssertionError(e);
+            }
+        });
+        return csrg;
+    }
+
+    private static List<String> lines(ByteBuffer buffer, int start, int end) {
+        ByteLineTokenizer tokenizer = new ByteLineTokenizer(buffer, start, end, ' ', SymbolTable.create());
+        List<String> lines = new ArrayList<>();
+        while(tokenizer.nextLine()) {
+            lines.add(tokenizer.line());
+        }
+        return lines;
+    }
+}
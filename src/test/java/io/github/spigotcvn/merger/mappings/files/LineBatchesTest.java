@@ -0,0 +1,74 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineBatchesTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void tinyBatchesContainEveryMappingOnce() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(1);
+        TinyMappingFile tiny = TestMappings.tiny(generator.tiny());
+        File file = TestMappings.write(new File(directory, "mappings.tiny"), generator.tiny());
+
+        List<Mapping> originals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int[] batches = new int[1];
+        TinyMappingFile.loadBatches(file, 4096, batch -> {
+            assertEquals(tiny.getOriginalNamespaceName(), batch.getOriginalNamespaceName());
+            assertEquals(tiny.getNamespaceNames(), batch.getNamespaceNames());
+            for(int row = 0; row < batch.size(); row++) {
+                originals.add(batch.getOriginalMapping(row));
+                names.add(batch.getName("named", row));
+            }
+            batches[0]++;
+        });
+
+        assertTrue(batches[0] > 1);
+        assertEquals(tiny.getOriginalMappings(), originals);
+        for(int row = 0; row < tiny.size(); row++) {
+            assertEquals(tiny.getName("named", row), names.get(row));
+        }
+    }
+
+    @Test
+    void csrgBatchesContainEveryMappingOnce() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(2);
+        CSRGMappingFile csrg = TestMappings.csrg(generator.csrg());
+        File file = TestMappings.write(new File(directory, "mappings.csrg"), generator.csrg());
+
+        List<Mapping> originals = new ArrayList<>();
+        List<Mapping> remapped = new ArrayList<>();
+        CSRGMappingFile.loadBatches(file, 4096, batch -> {
+            originals.addAll(batch.getOriginalMappings());
+            remapped.addAll(batch.getRemappedMappings());
+        });
+
+        assertEquals(csrg.getOriginalMappings(), originals);
+        assertEquals(csrg.getRemappedMappings(), remapped);
+    }
+
+    @Test
+    void snapshotsAreASingleBatch() throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(TestMappings.generator(3).tiny());
+        File file = TestMappings.write(new File(directory, "mappings.snapshot"), new TinyMappingSnapshot(tiny));
+
+        List<TinyMappingFile> batches = new ArrayList<>();
+        TinyMappingFile.loadBatches(file, 4096, batches::add);
+
+        assertEquals(1, batches.size());
+        assertEquals(TestMappings.text(tiny), TestMappings.text(batches.get(0)));
+    }
+}
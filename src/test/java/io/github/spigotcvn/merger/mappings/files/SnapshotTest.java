@@ -0,0 +1,88 @@
+package io.github.spigotcvn.merger.mappings.files;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.generator.MappingGenerator;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void tinyRoundTrip() throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(TestMappings.generator(1).tiny());
+
+        TinyMappingSnapshot loaded = new TinyMappingSnapshot();
+        loaded.loadFromFile(TestMappings.write(new File(directory, "mappings.snapshot"), new TinyMappingSnapshot(tiny)));
+
+        assertEquals(tiny.getOriginalNamespaceName(), loaded.getMappings().getOriginalNamespaceName());
+        assertEquals(tiny.getNamespaceNames(), loaded.getMappings().getNamespaceNames());
+        assertEquals(TestMappings.text(tiny), TestMappings.text(loaded.getMappings()));
+    }
+
+    @Test
+    void csrgRoundTrip() throws InvalidMappingFormatException {
+        CSRGMappingFile csrg = TestMappings.csrg(TestMappings.generator(2).csrg());
+
+        CSRGMappingSnapshot loaded = new CSRGMappingSnapshot();
+        loaded.loadFromFile(TestMappings.write(new File(directory, "mappings.snapshot"), new CSRGMappingSnapshot(csrg)));
+
+        assertEquals(TestMappings.text(csrg), TestMappings.text(loaded.getMappings()));
+    }
+
+    @Test
+    void snapshotsAreSavedTheSameEveryTime() throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(TestMappings.generator(3).tiny());
+        byte[] snapshot = TestMappings.bytes(new TinyMappingSnapshot(tiny));
+
+        TinyMappingSnapshot loaded = new TinyMappingSnapshot();
+        loaded.loadFromFile(TestMappings.write(new File(directory, "mappings.snapshot"), snapshot));
+
+        assertArrayEquals(snapshot, TestMappings.bytes(new TinyMappingSnapshot(loaded.getMappings())));
+    }
+
+    @Test
+    void mappingFilesLoadSnapshots() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(4);
+        TinyMappingFile tiny = TestMappings.tiny(generator.tiny());
+        CSRGMappingFile csrg = TestMappings.csrg(generator.csrg());
+
+        TinyMappingFile loadedTiny = new TinyMappingFile();
+        loadedTiny.loadFromFile(TestMappings.write(new File(directory, "tiny.snapshot"), new TinyMappingSnapshot(tiny)));
+        CSRGMappingFile loadedCsrg = new CSRGMappingFile();
+        loadedCsrg.loadFromFile(TestMappings.write(new File(directory, "csrg.snapshot"), new CSRGMappingSnapshot(csrg)));
+
+        assertEquals(TestMappings.text(tiny), TestMappings.text(loadedTiny));
+        assertEquals(TestMappings.text(csrg), TestMappings.text(loadedCsrg));
+    }
+
+    @Test
+    void detectsSnapshots() throws InvalidMappingFormatException {
+        MappingGenerator generator = TestMappings.generator(5);
+        File tiny = TestMappings.write(new File(directory, "mappings.tiny"), generator.tiny());
+        File tinySnapshot = TestMappings.write(new File(directory, "tiny.snapshot"), new TinyMappingSnapshot(TestMappings.tiny(generator.tiny())));
+        File csrgSnapshot = TestMappings.write(new File(directory, "csrg.snapshot"), new CSRGMappingSnapshot(TestMappings.csrg(generator.csrg())));
+        File empty = TestMappings.write(new File(directory, "empty"), new byte[0]);
+
+        assertFalse(SnapshotFormat.isSnapshot(tiny));
+        assertFalse(SnapshotFormat.isSnapshot(empty));
+        assertTrue(SnapshotFormat.isSnapshot(tinySnapshot));
+        assertTrue(SnapshotFormat.isTinySnapshot(tinySnapshot));
+        assertTrue(SnapshotFormat.isSnapshot(csrgSnapshot));
+        assertFalse(SnapshotFormat.isTinySnapshot(csrgSnapshot));
+    }
+
+    @Test
+    void rejectsSnapshotsOfTheOtherKind() throws InvalidMappingFormatException {
+        CSRGMappingFile csrg = TestMappings.csrg(TestMappings.generator(6).csrg());
+        byte[] snapshot = TestMappings.bytes(new CSRGMappingSnapshot(csrg));
+
+        assertThrows(InvalidMappingFormatException.class, () -> TestMappings.tiny(snapshot));
+    }
+}
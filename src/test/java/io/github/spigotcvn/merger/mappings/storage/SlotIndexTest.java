@@ -0,0 +1,96 @@
+package io.github.spigotcvn.merger.mappings.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotIndexTest {
+    private final List<String> keys = new ArrayList<>();
+    private final SlotIndex<String> index = new SlotIndex<String>() {
+        @Override
+        protected int hashRow(int row) {
+            return keys.get(row).hashCode();
+        }
+
+        @Override
+        protected boolean matches(int row, String key) {
+            return keys.get(row).equals(key);
+        }
+
+        @Override
+        protected boolean sameKey(int row, int otherRow) {
+            return keys.get(row).equals(keys.get(otherRow));
+        }
+
+        @Override
+        protected boolean isIndexed(int row) {
+            return !keys.get(row).isEmpty();
+        }
+    };
+
+    @Test
+    void findsInsertedRowsWhileGrowing() {
+        for(int row = 0; row < 10000; row++) {
+            keys.add("key" + row);
+            assertEquals(row, index.insert(row));
+        }
+
+        assertEquals(10000, index.size());
+        for(int row = 0; row < 10000; row++) {
+            assertEquals(row, index.find("key" + row));
+        }
+        assertEquals(-1, index.find("missing"));
+    }
+
+    @Test
+    void keepsTheFirstRowOfAKey() {
+        keys.add("a");
+        keys.add("b");
+        keys.add("a");
+
+        assertEquals(0, index.insert(0));
+        assertEquals(1, index.insert(1));
+        assertEquals(0, index.insert(2));
+        assertEquals(2, index.size());
+        assertEquals(0, index.find("a"));
+    }
+
+    @Test
+    void skipsRowsThatArentIndexed() {
+        keys.add("");
+        keys.add("a");
+
+        assertEquals(-1, index.insert(0));
+        assertEquals(1, index.insert(1));
+        assertEquals(-1, index.find(""));
+    }
+
+    @Test
+    void rebuildsFromTheRows() {
+        keys.add("a");
+        index.insert(0);
+        keys.set(0, "b");
+        keys.add("c");
+        keys.add("b");
+
+        index.rebuild(keys.size());
+        assertEquals(-1, index.find("a"));
+        assertEquals(0, index.find("b"));
+        assertEquals(1, index.find("c"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void collidingHashesAreProbed() {
+        // "Aa" and "BB" have the same hash code
+        keys.add("Aa");
+        keys.add("BB");
+        index.rebuild(keys.size());
+
+        assertEquals(0, index.find("Aa"));
+        assertEquals(1, index.find("BB"));
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.spigotcvn.merger.remap;
+
+import io.github.spigotcvn.merger.MappingMerger;
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackageRemapperTest {
+    // a/X and b/X end up with the same name, c/Y is moved twice and d/Z only has a name in the second namespace
+    private static final String TINY = "v1\tofficial\tintermediary\tnamed\n"
+            + "CLASS\ta/X\tclass_1\tFoo\n"
+            + "CLASS\tb/X\tclass_2\tBar\n"
+            + "CLASS\tc/Y\tclass_3\tc/Baz\n"
+            + "CLASS\tY\tclass_4\n"
+            + "FIELD\ta/X\tLc/Y;\tf\tfield_1\tfoo\n"
+            + "FIELD\tb/X\tLc/Y;\tf\tfield_2\n"
+            + "METHOD\tb/X\t(La/X;)Lb/X;\tm\tmethod_1\tbar\n"
+            + "METHOD\tY\t(LY;)V\tn\tmethod_2\tbaz\n";
+    private static final String RULES = "a/ b/\nc/ ./\n./ e/\n";
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void applyingAllRulesMatchesApplyingThemOneByOne(boolean repackageOriginal) throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(TINY);
+        MappingMerger.applyPackageMapping(tiny, TestMappings.csrg(RULES), repackageOriginal);
+
+        TinyMappingFile oneByOne = TestMappings.tiny(TINY);
+        for(String rule : RULES.split("\n")) {
+            MappingMerger.applyPackageMapping(oneByOne, TestMappings.csrg(rule + "\n"), repackageOriginal);
+        }
+
+        assertEquals(TestMappings.text(oneByOne), TestMappings.text(tiny));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void classesMovedOntoTheSameNameAreMerged(boolean repackageOriginal) throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny("v1\tofficial\tnamed\n"
+                + "CLASS\ta/X\tFoo\n"
+                + "CLASS\tb/X\tBar\n");
+        MappingMerger.applyPackageMapping(tiny, TestMappings.csrg("a/ b/\n"), repackageOriginal);
+
+        String expected = repackageOriginal
+                ? "v1\tofficial\tnamed\nCLASS\tb/X\tBar\n"
+                : "v1\tofficial\tnamed\nCLASS\ta/X\tFoo\nCLASS\tb/X\tBar\n";
+        assertEquals(expected, TestMappings.text(tiny));
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.spigotcvn.merger.util;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderedBatchWriterTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writesBatchesInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // the first batches of every window take the longest
+        new OrderedBatchWriter(executor, 3).write(out, 20, batch -> {
+            sleep(3 - batch % 3);
+            return (batch + ",").getBytes(StandardCharsets.UTF_8);
+        });
+
+        StringBuilder expected = new StringBuilder();
+        for(int batch = 0; batch < 20; batch++) {
+            expected.append(batch).append(',');
+        }
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    void rethrowsFailedBatches() {
+        IllegalStateException failure = new IllegalStateException("batch 5");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> new OrderedBatchWriter(executor, 3).write(out, 20, batch -> {
+            if(batch == 5) {
+                throw failure;
+            }
+            return new byte[] {(byte) batch};
+        })));
+        assertArrayEquals(new byte[] {0, 1, 2, 3, 4}, out.toByteArray());
+    }
+
+    @Test
+    void tinySavedInParallelMatchesSequentialSave() throws InvalidMappingFormatException {
+        String text = TestMappings.largeTiny(20000, "\n", true);
+        TinyMappingFile tiny = TestMappings.tiny(text);
+
+        // many batches
+        byte[] sequential = ExecutionContext.sequential().call(() -> TestMappings.bytes(tiny));
+        try(ExecutionContext context = ExecutionContext.withThreads(4)) {
+            assertArrayEquals(sequential, context.call(() -> TestMappings.bytes(tiny)));
+        }
+        assertEquals(text, new String(sequential, StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(int millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
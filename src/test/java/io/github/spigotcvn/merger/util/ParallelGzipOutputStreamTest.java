@@ -0,0 +1,108 @@
+package io.github.spigotcvn.merger.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelGzipOutputStreamTest {
+    private static final int BLOCK_SIZE = 64;
+    private static final int WINDOW = 3;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void emptyOutputIsAValidGzipFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        open(out).close();
+
+        assertTrue(out.size() > 0);
+        assertArrayEquals(new byte[0], decompress(out.toByteArray()));
+    }
+
+    @Test
+    void roundTripsWholeBlocks() throws IOException {
+        byte[] data = data(BLOCK_SIZE * 2);
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test
+    void roundTripsMoreDataThanTheWindowHolds() throws IOException {
+        byte[] data = data(BLOCK_SIZE * WINDOW * 10 + 17);
+        assertArrayEquals(data, decompress(compress(data)));
+
+        // written a byte at a time as well
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ParallelGzipOutputStream gzip = open(out)) {
+            for(byte b : data) {
+                gzip.write(b);
+            }
+        }
+        assertArrayEquals(data, decompress(out.toByteArray()));
+    }
+
+    @Test
+    void flushWritesEverythingSoFarAsANewMember() throws IOException {
+        byte[] data = data(BLOCK_SIZE * 3);
+        int half = BLOCK_SIZE + BLOCK_SIZE / 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ParallelGzipOutputStream gzip = open(out)) {
+            gzip.write(data, 0, half);
+            gzip.flush();
+            // the members written so far can already be read on their own
+            assertArrayEquals(Arrays.copyOf(data, half), decompress(out.toByteArray()));
+            gzip.write(data, half, data.length - half);
+        }
+        assertArrayEquals(data, decompress(out.toByteArray()));
+    }
+
+    private ParallelGzipOutputStream open(ByteArrayOutputStream out) {
+        return new ParallelGzipOutputStream(out, executor, WINDOW, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ParallelGzipOutputStream gzip = open(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        // partly compressible
+        for(int i = 0; i < length; i += 3) {
+            data[i] = 'a';
+        }
+        return data;
+    }
+}
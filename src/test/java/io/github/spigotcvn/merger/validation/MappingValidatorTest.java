@@ -0,0 +1,94 @@
+package io.github.spigotcvn.merger.validation;
+
+import io.github.spigotcvn.merger.TestMappings;
+import io.github.spigotcvn.merger.mappings.InvalidMappingFormatException;
+import io.github.spigotcvn.merger.mappings.files.TinyMappingFile;
+import io.github.spigotcvn.merger.mappings.types.Mapping;
+import io.github.spigotcvn.merger.util.ExecutionContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingValidatorTest {
+    private static final String MAPPINGS = "v1\tofficial\tnamed\tspigot\n"
+            + "CLASS\ta\tFoo\tFoo\n"
+            // same named name as a
+            + "CLASS\tb\tFoo\tBar\n"
+            + "CLASS\tp/c\tp/C\n"
+            + "FIELD\ta\tI\tx\tone\tone\n"
+            // same named name as x
+            + "FIELD\ta\tI\ty\tone\ttwo\n"
+            // p/d isn't mapped, but p/c is
+            + "METHOD\ta\t(Lp/d;Ljava/lang/String;)V\tm\tm1\tm1\n"
+            // q isn't mapped, but a is
+            + "METHOD\tq\t()V\tn\tn1\tn1\n";
+
+    @Test
+    void findsEveryProblem() throws InvalidMappingFormatException {
+        ValidationReport report = MappingValidator.validate(TestMappings.tiny(MAPPINGS));
+
+        assertFalse(report.isEmpty());
+        assertEquals(1, report.getCount(MappingValidator.Check.MISSING_NAMES));
+        assertEquals(Collections.singletonList(new Mapping(Mapping.Type.CLASS, "p/c", null, null)),
+                report.getExamples(MappingValidator.Check.MISSING_NAMES, "spigot"));
+        assertEquals(2, report.getCount(MappingValidator.Check.DUPLICATE_NAMES, "named"));
+        assertEquals(0, report.getCount(MappingValidator.Check.DUPLICATE_NAMES, "spigot"));
+        assertEquals(2, report.getCount(MappingValidator.Check.DANGLING_CLASSES));
+    }
+
+    @Test
+    void runsOnlyTheGivenChecks() throws InvalidMappingFormatException {
+        ValidationReport report = MappingValidator.validate(TestMappings.tiny(MAPPINGS), EnumSet.of(MappingValidator.Check.MISSING_NAMES));
+
+        assertEquals(1, report.getCount(MappingValidator.Check.MISSING_NAMES));
+        assertEquals(0, report.getCount(MappingValidator.Check.DUPLICATE_NAMES));
+        assertEquals(0, report.getCount(MappingValidator.Check.DANGLING_CLASSES));
+    }
+
+    @Test
+    void generatedMappingsHaveNoMissingNames() throws InvalidMappingFormatException {
+        ValidationReport report = MappingValidator.validate(TestMappings.tiny(TestMappings.generator(1).tiny()));
+
+        assertEquals(0, report.getCount(MappingValidator.Check.MISSING_NAMES));
+    }
+
+    @Test
+    void reportIsTheSameOnAnyAmountOfThreads() throws InvalidMappingFormatException {
+        // enough problems to fill several batches
+        StringBuilder mappings = new StringBuilder("v1\tofficial\tnamed\tspigot\n");
+        for(int i = 0; i < 20000; i++) {
+            mappings.append("CLASS\tc").append(i).append("\tn").append(i / 2).append(i % 3 == 0 ? "\n" : "\ts" + i + "\n");
+        }
+        TinyMappingFile tiny = TestMappings.tiny(mappings.toString());
+
+        String sequential = ExecutionContext.sequential().call(() -> MappingValidator.validate(tiny).toString());
+        String parallel;
+        try(ExecutionContext context = ExecutionContext.withThreads(4)) {
+            parallel = context.call(() -> MappingValidator.validate(tiny).toString());
+        }
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void savingFailsWithTheReport() throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(MAPPINGS);
+        tiny.setMissingNamePolicy(MissingNamePolicy.FAIL);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> TestMappings.bytes(tiny));
+        assertTrue(e.getMessage().contains("MISSING_NAMES in spigot: 1 mappings, like p/c"), e.getMessage());
+    }
+
+    @Test
+    void savingFillsOrSkipsMissingNames() throws InvalidMappingFormatException {
+        TinyMappingFile tiny = TestMappings.tiny(MAPPINGS);
+
+        tiny.setMissingNamePolicy(MissingNamePolicy.FILL);
+        assertTrue(TestMappings.text(tiny).contains("CLASS\tp/c\tp/C\tp/c\n"));
+        tiny.setMissingNamePolicy(MissingNamePolicy.SKIP);
+        assertFalse(TestMappings.text(tiny).contains("p/c"));
+        assertTrue(TestMappings.text(tiny).contains("CLASS\tb\tFoo\tBar\n"));
+    }
+}